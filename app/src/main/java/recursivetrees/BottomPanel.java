@@ -0,0 +1,245 @@
+package recursivetrees;
+
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * 
+ * This is the bottom panel in the frame. It holds two buttons.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class BottomPanel extends JPanel implements ActionListener {
+
+	/*
+	 * The most trees the user can plant in a forest.
+	 */
+	public static final int MAX_FOREST_SIZE = 5000;
+
+	private JButton repaintButton;
+	private JButton closeButton;
+	private JButton exportButton;
+	private JCheckBox detailBox;
+	private JCheckBox statsBox;
+	private JSpinner forestSpinner;
+	private TreeCanvas treeCanvas;
+	private JFrame mainFrame;
+	private LeftPanel leftPanel;
+
+	/*
+	 * These member variables are for a custom feature, Grow Tree.
+	 */
+	private JButton growTree;
+	private JLabel dayCounter;
+	private int daysPassed;
+	private Tree tree;
+
+	public BottomPanel(TreeCanvas treeCanvas, JFrame mainFrame, LeftPanel leftPanel) {
+
+		this.treeCanvas = treeCanvas;
+		this.mainFrame = mainFrame;
+		this.leftPanel = leftPanel;
+
+		this.setLayout(new FlowLayout(FlowLayout.RIGHT)); // The components are anchored to the right
+
+		/*
+		 * The following are for a custom feature, Grow Tree.
+		 * 
+		 * The Tree member variable is initialized as a handle on the Tree. When the
+		 * action is performed, the GrowthAnimator of the canvas grows the tree with
+		 * its current branch settings from the trunk up, through the leaf and fruit
+		 * stages of Grow Tree.
+		 */
+		this.tree = treeCanvas.getTree();
+		this.growTree = new JButton("Grow Tree");
+		growTree.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+
+				BottomPanel.this.treeCanvas.getAnimator().start();
+
+			}
+
+		});
+
+		/*
+		 * The repaint button is created and an anonymous ActionListener is added.
+		 */
+		repaintButton = new JButton("Refresh");
+		repaintButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+
+				JTextField textField = BottomPanel.this.leftPanel.getTextField(); // creates a local handle on the
+																					// textField in the GUI
+
+				String input = textField.getText(); // gets the value from the textField as a String
+				int value = Integer.parseInt(input); // converts the value to an Integer
+				Tree tree = BottomPanel.this.treeCanvas.getTree(); // creates a local handle on the Tree
+				tree.setTheta(value); // sets the theta value in Tree
+				BottomPanel.this.leftPanel.applySeed(); // sets the typed seed, or a new one for a new tree
+
+				BottomPanel.this.treeCanvas.repaint(); // repaints the treeCanvas
+			}
+
+		});
+
+		/*
+		 * The export button asks for a file and writes the tree to it as an SVG. A
+		 * large tree can take a while to write, so it is written on a background
+		 * thread and the button is disabled until it is done.
+		 */
+		exportButton = new JButton("Export SVG");
+		exportButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+
+				JFileChooser chooser = new JFileChooser();
+				chooser.setSelectedFile(new File("tree-" + tree.getSeed() + ".svg"));
+				if (chooser.showSaveDialog(BottomPanel.this) != JFileChooser.APPROVE_OPTION) {
+					return;
+				}
+
+				final File file = chooser.getSelectedFile();
+				final SvgExporter exporter = new SvgExporter(tree, TreeCanvas.PLANT_X, TreeCanvas.PLANT_Y,
+						BottomPanel.this.treeCanvas.getWidth(), BottomPanel.this.treeCanvas.getHeight());
+				exportButton.setEnabled(false);
+
+				new SwingWorker<Void, Void>() {
+
+					@Override
+					protected Void doInBackground() throws IOException {
+						exporter.write(file.toPath());
+						return null;
+					}
+
+					@Override
+					protected void done() {
+
+						exportButton.setEnabled(true);
+						String failure = null;
+						try {
+							this.get();
+						} catch (ExecutionException ex) {
+							failure = ex.getCause() == null ? ex.getMessage() : ex.getCause().getMessage();
+						} catch (InterruptedException ex) {
+							failure = "the export was interrupted.";
+						}
+						if (failure != null) {
+							JOptionPane.showMessageDialog(BottomPanel.this, "Could not export the tree: " + failure,
+									"Export SVG", JOptionPane.ERROR_MESSAGE);
+						}
+
+					}
+
+				}.execute();
+
+			}
+
+		});
+
+		/*
+		 * The detail check box sets whether the canvas draws branches too small to
+		 * see as dots while it is zoomed.
+		 */
+		detailBox = new JCheckBox("Simplify", this.treeCanvas.isLevelOfDetail());
+		detailBox.setToolTipText("Draw branches too small to see as dots while zoomed");
+		detailBox.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+
+				BottomPanel.this.treeCanvas.setLevelOfDetail(detailBox.isSelected());
+
+			}
+
+		});
+
+		/*
+		 * The stats check box sets whether the canvas shows how long the tree took to
+		 * make and how big it is.
+		 */
+		statsBox = new JCheckBox("Stats", this.treeCanvas.isShowStats());
+		statsBox.setToolTipText("Show how long the tree took to generate and draw");
+		statsBox.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+
+				BottomPanel.this.treeCanvas.setShowStats(statsBox.isSelected());
+
+			}
+
+		});
+
+		/*
+		 * The forest spinner sets how many trees the canvas plants, with 0 for just
+		 * the one tree. A forest cannot be grown, so Grow Tree is turned off while one
+		 * is shown.
+		 */
+		forestSpinner = new JSpinner(new SpinnerNumberModel(0, 0, MAX_FOREST_SIZE, 100));
+		forestSpinner.setToolTipText("Plant a forest of this many trees, or 0 for one tree");
+		forestSpinner.addChangeListener(new ChangeListener() {
+
+			@Override
+			public void stateChanged(ChangeEvent e) {
+
+				int forestSize = (int) forestSpinner.getValue();
+				BottomPanel.this.treeCanvas.getAnimator().stop();
+				BottomPanel.this.treeCanvas.setForestSize(forestSize);
+				growTree.setEnabled(forestSize == 0);
+
+			}
+
+		});
+
+		/*
+		 * The exit button is created and add an anonymous ActionListener is added.
+		 */
+		closeButton = new JButton("Exit");
+		closeButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+
+				BottomPanel.this.mainFrame.dispose(); // terminates the frame
+
+			}
+
+		});
+
+		/*
+		 * The buttons are added to BottomPanel.
+		 */
+		this.add(new JLabel("Forest:"));
+		this.add(forestSpinner);
+		this.add(detailBox);
+		this.add(statsBox);
+		this.add(growTree);
+		this.add(repaintButton);
+		this.add(exportButton);
+		this.add(closeButton);
+
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		// TODO Auto-generated method stub
+
+	}
+
+}
@@ -0,0 +1,222 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+/**
+ * This class holds a generated forest: many trees, each planted at its own
+ * place and drawn at its own scale. It is made by a ForestGenerator.
+ *
+ * Every tree is generated planted at 0, 0 and is moved and scaled into place
+ * when it is painted. The trees are kept from the back of the forest to the
+ * front, so painting them in order draws the trees in front over the ones
+ * behind them. Trees whose box is outside the clip are skipped.
+ *
+ * All of the trees share the same branch color and leaf palette, so the forest
+ * is painted through one ShapeBatch, which draws a path per stroke width and
+ * color for many trees at a time instead of for every tree. The batch keeps
+ * the shapes in the order they were added where they overlap, so every tree is
+ * still drawn over the trees behind it.
+ *
+ * The trees are stored in buffers from a GeometryPool, so a forest is only
+ * good until its pool is reset. Painting reuses its ShapeBatch, so a forest
+ * must only be painted from one thread at a time.
+ *
+ * @author frankdesilets
+ *
+ */
+public class Forest {
+
+	private final TreeGeometry[] trees;
+	private final float[] x;
+	private final float[] y;
+	private final float[] scale;
+
+	/*
+	 * The box of every tree in the coordinates of the forest, grown by how far
+	 * the strokes and leaves reach.
+	 */
+	private final float[] minX;
+	private final float[] minY;
+	private final float[] maxX;
+	private final float[] maxY;
+	private final GeometryPool pool;
+	private final Color branchColor;
+	private final Color[] colors; // the leaf palette followed by the fruit palette
+	private final int firstFruitColor;
+	private final ShapeBatch batch = new ShapeBatch();
+
+	/*
+	 * The pixels of the clip that a dot has been drawn on, like in a LevelOfDetail,
+	 * so the leaves of far away trees falling on the same pixel only draw it once.
+	 */
+	private final PixelMask pixels = new PixelMask();
+
+	Forest(TreeGeometry[] trees, float[] x, float[] y, float[] scale, float[] minX, float[] minY, float[] maxX,
+			float[] maxY, GeometryPool pool) {
+
+		this.trees = trees;
+		this.x = x;
+		this.y = y;
+		this.scale = scale;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.pool = pool;
+
+		/*
+		 * The fruit colors come after the leaf colors, so leaves and fruit can go
+		 * into the same batch.
+		 */
+		if (trees.length == 0) {
+			this.branchColor = Color.BLACK;
+			this.colors = new Color[0];
+			this.firstFruitColor = 0;
+		} else {
+			this.branchColor = trees[0].getBranchColor();
+			Color[] leafPalette = trees[0].getLeafPalette();
+			Color[] fruitPalette = trees[0].getFruitPalette();
+			this.colors = Arrays.copyOf(leafPalette, leafPalette.length + fruitPalette.length);
+			System.arraycopy(fruitPalette, 0, colors, leafPalette.length, fruitPalette.length);
+			this.firstFruitColor = leafPalette.length;
+		}
+
+	}
+
+	/**
+	 *
+	 * Paints the trees inside the clip of g, from the back to the front.
+	 *
+	 * @param g
+	 */
+	public void paint(Graphics g) {
+
+		Graphics2D g2 = (Graphics2D) g;
+		Rectangle clip = g2.getClipBounds();
+		AffineTransform xf = g2.getTransform();
+		double zoom = Math.sqrt(Math.abs(xf.getDeterminant()));
+		pixels.start(xf, clip);
+		batch.start(g2, branchColor, colors);
+
+		for (int i = 0; i < trees.length; i++) {
+
+			if (clip != null && (maxX[i] < clip.x || minX[i] > clip.x + clip.width || maxY[i] < clip.y
+					|| minY[i] > clip.y + clip.height)) {
+				continue;
+			}
+			batch.place(x[i], y[i], scale[i]);
+			AffineTransform placed = new AffineTransform(xf);
+			placed.translate(x[i], y[i]);
+			placed.scale(scale[i], scale[i]);
+
+			/*
+			 * Like in a LevelOfDetail, leaves and fruit smaller than the threshold are
+			 * drawn as a dot, once per pixel, which is far quicker than filling every
+			 * oval.
+			 */
+			float pixel = (float) (1 / Math.max(zoom * scale[i], 1e-9));
+			float limit = LevelOfDetail.DEFAULT_THRESHOLD * pixel;
+
+			SegmentBuffer branches = trees[i].getBranches();
+			for (int b = 0; b < branches.size(); b++) {
+				batch.line(branches.stroke(b), branches.x1(b), branches.y1(b), branches.x2(b), branches.y2(b));
+			}
+			LeafBuffer leaves = trees[i].getLeaves();
+			for (int l = 0; l < leaves.size(); l++) {
+				if (10 < limit) {
+					if (pixels.claim(placed, leaves.x(l), leaves.y(l))) {
+						batch.rect(leaves.color(l), leaves.x(l), leaves.y(l), pixel, pixel);
+					}
+				} else {
+					batch.oval(leaves.color(l), leaves.x(l), leaves.y(l), leaves.rotation(l), 5, 10);
+				}
+			}
+			LeafBuffer fruit = trees[i].getFruit();
+			for (int f = 0; f < fruit.size(); f++) {
+				if (5 < limit) {
+					if (pixels.claim(placed, fruit.x(f), fruit.y(f))) {
+						batch.rect(firstFruitColor + fruit.color(f), fruit.x(f), fruit.y(f), pixel, pixel);
+					}
+				} else {
+					batch.oval(firstFruitColor + fruit.color(f), fruit.x(f), fruit.y(f), fruit.rotation(f), 5, 5);
+				}
+			}
+
+		}
+
+		batch.finish();
+
+	}
+
+	/**
+	 *
+	 * Returns how many trees the forest has.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return trees.length;
+	}
+
+	/**
+	 *
+	 * Returns tree i, counted from the back of the forest. It is planted at 0, 0
+	 * and is drawn at getX(i) and getY(i), getScale(i) times its size.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public TreeGeometry getTree(int i) {
+		return trees[i];
+	}
+
+	public float getX(int i) {
+		return x[i];
+	}
+
+	public float getY(int i) {
+		return y[i];
+	}
+
+	public float getScale(int i) {
+		return scale[i];
+	}
+
+	/**
+	 *
+	 * Returns how many branches all of the trees have together.
+	 *
+	 * @return
+	 */
+	public long getBranchCount() {
+
+		long count = 0;
+		for (TreeGeometry tree : trees) {
+			count += tree.getBranches().size();
+		}
+		return count;
+
+	}
+
+	/**
+	 *
+	 * Sets whether the trees are collected into a few paths before they are
+	 * drawn, which they are by default, or drawn one shape at a time. See
+	 * ShapeBatch.
+	 *
+	 * @param batched
+	 */
+	public void setBatched(boolean batched) {
+		batch.setBatched(batched);
+	}
+
+	public GeometryPool getPool() {
+		return pool;
+	}
+
+}
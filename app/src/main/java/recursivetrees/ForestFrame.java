@@ -0,0 +1,54 @@
+package recursivetrees;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * This class holds one finished frame of the canvas in forest mode: a generated
+ * Forest, the image it was drawn into, the Tree revision it was made from and
+ * the RenderStats of how it was made. Like a TreeFrame, it is built completely
+ * on the render thread and then handed to the canvas in one piece.
+ *
+ * @author frankdesilets
+ *
+ */
+public class ForestFrame {
+
+	private final Forest forest;
+	private final BufferedImage image;
+	private final int revision;
+	private final RenderStats stats;
+
+	public ForestFrame(Forest forest, BufferedImage image, int revision, RenderStats stats) {
+
+		this.forest = forest;
+		this.image = image;
+		this.revision = revision;
+		this.stats = stats;
+
+	}
+
+	public Forest getForest() {
+		return forest;
+	}
+
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	public int getRevision() {
+		return revision;
+	}
+
+	public RenderStats getStats() {
+		return stats;
+	}
+
+	public int getWidth() {
+		return image.getWidth();
+	}
+
+	public int getHeight() {
+		return image.getHeight();
+	}
+
+}
@@ -0,0 +1,280 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class generates a Forest: many trees planted at random places on the
+ * ground between the horizon and the bottom of the image. A tree planted near
+ * the horizon is far away, so it is drawn smaller, down to MIN_SCALE of its
+ * size. Every tree gets its own copy of the settings of the Tree, with its own
+ * seed and a trunk that leans a little, but the same leaf colors, picked from
+ * the seed of the Tree. A far away tree has one level fewer for every time it
+ * is half as big, since the branches it would lose would be too small to see.
+ *
+ * The places, sizes and seeds all come from the seed of the Tree, so the same
+ * settings always give the same forest.
+ *
+ * The trees are generated in parallel, one fork-join task per tree, in the
+ * common pool unless another pool is set. The pool's work queues keep every
+ * thread busy however different the sizes of the trees are, so each tree is
+ * generated on a single thread. The trees are stored in buffers handed out by
+ * a GeometryPool, so a forest of a thousand trees takes a handful of large
+ * arrays rather than thousands of small ones.
+ *
+ * @author frankdesilets
+ *
+ */
+public class ForestGenerator {
+
+	/*
+	 * How far down the image the horizon is, and how big the trees on it are.
+	 */
+	public static final double HORIZON = 0.45;
+	public static final double MIN_SCALE = 0.15;
+
+	/*
+	 * The most segments a tree in a forest has. A forest has many trees, so they
+	 * are kept small enough for a thousand of them to fit in memory.
+	 */
+	public static final int MAX_SEGMENTS = 14;
+
+	/*
+	 * How many degrees a trunk can lean either way.
+	 */
+	private static final int MAX_LEAN = 8;
+
+	private final Tree tree;
+	private final int count;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private volatile boolean cancelled; // set from another thread to stop generating
+
+	/**
+	 *
+	 * Creates a generator for a forest of count trees with the settings of the
+	 * tree, which are copied.
+	 *
+	 * @param tree
+	 * @param count
+	 */
+	public ForestGenerator(Tree tree, int count) {
+
+		this.tree = new Tree(tree);
+		this.count = count;
+
+	}
+
+	/**
+	 *
+	 * Generates the forest for an image of the given size. The pool is reset
+	 * first, so the trees that were made from it before can no longer be used.
+	 * Throws a CancellationException if cancel() is called before it is done.
+	 *
+	 * @param width
+	 * @param height
+	 * @param buffers
+	 * @return
+	 */
+	public Forest generate(int width, int height, GeometryPool buffers) {
+
+		buffers.reset();
+		SplittableRandom random = new SplittableRandom(tree.getSeed());
+
+		/*
+		 * How far back every tree is planted is picked first, and sorted, so the trees
+		 * are kept from the back to the front. The rest of each tree is picked after.
+		 */
+		double[] near = new double[count];
+		for (int i = 0; i < count; i++) {
+			near[i] = random.nextDouble();
+		}
+		Arrays.sort(near);
+
+		double horizon = height * HORIZON;
+		float[] x = new float[count];
+		float[] y = new float[count];
+		float[] scale = new float[count];
+		Tree[] settings = new Tree[count];
+		for (int i = 0; i < count; i++) {
+
+			x[i] = (float) (random.nextDouble() * width);
+			y[i] = (float) (horizon + near[i] * (height - horizon));
+			scale[i] = (float) (MIN_SCALE + near[i] * (1 - MIN_SCALE));
+
+			settings[i] = new Tree(tree);
+			settings[i].setSeed(random.nextLong());
+			settings[i].setTheta(tree.getTheta() + random.nextInt(-MAX_LEAN, MAX_LEAN + 1));
+			settings[i].setMaxSegments(ForestGenerator.segmentsFor(tree.getMaxSegments(), scale[i]));
+
+		}
+
+		/*
+		 * Every tree is its own task, and writes its box into its own slot. The trees
+		 * all use the leaf palette of the forest, so the forest can be painted with
+		 * one path per color.
+		 */
+		Color[] leafPalette = new TreeGenerator(tree).leafPalette();
+		float[] minX = new float[count];
+		float[] minY = new float[count];
+		float[] maxX = new float[count];
+		float[] maxY = new float[count];
+		List<ForkJoinTask<TreeGeometry>> tasks = new ArrayList<ForkJoinTask<TreeGeometry>>(count);
+		for (int i = 0; i < count; i++) {
+
+			final int n = i;
+			tasks.add(pool.submit(new Callable<TreeGeometry>() {
+
+				@Override
+				public TreeGeometry call() {
+
+					if (cancelled) {
+						throw new CancellationException("Forest generation was cancelled.");
+					}
+					TreeGenerator generator = new TreeGenerator(settings[n]);
+					generator.setParallelDepth(0);
+					generator.setLeafPalette(leafPalette);
+					TreeGeometry geometry = generator.generate(0, 0, buffers);
+					ForestGenerator.findBounds(geometry, x[n], y[n], scale[n], n, minX, minY, maxX, maxY);
+					return geometry;
+
+				}
+
+			}));
+
+		}
+
+		/*
+		 * Every task is waited for, even after a cancel, so none of them is still
+		 * writing to the pool when this returns.
+		 */
+		for (ForkJoinTask<TreeGeometry> task : tasks) {
+			task.quietlyJoin();
+		}
+		if (cancelled) {
+			throw new CancellationException("Forest generation was cancelled.");
+		}
+		TreeGeometry[] trees = new TreeGeometry[count];
+		for (int i = 0; i < count; i++) {
+			trees[i] = tasks.get(i).join();
+		}
+		return new Forest(trees, x, y, scale, minX, minY, maxX, maxY, buffers);
+
+	}
+
+	/**
+	 *
+	 * Returns how many segments a tree of the forest drawn at the given scale has:
+	 * the segments of the Tree, at most MAX_SEGMENTS, less one for every time the
+	 * tree is half as big.
+	 *
+	 * @param maxSegments
+	 * @param scale
+	 * @return
+	 */
+	public static int segmentsFor(int maxSegments, double scale) {
+
+		int dropped = (int) Math.floor(-Math.log(scale) / Math.log(2));
+		return Math.max(Math.min(maxSegments, MAX_SEGMENTS) - Math.max(dropped, 0), 1);
+
+	}
+
+	/**
+	 *
+	 * Returns about how many bytes the buffers of a forest of count trees with the
+	 * settings of the tree take. The trees are planted evenly from the horizon to
+	 * the bottom of the image, so the tree at place i of count is taken to be as
+	 * far back as the i-th of count evenly spaced places, with the segments
+	 * segmentsFor() gives it there.
+	 *
+	 * @param tree
+	 * @param count
+	 * @return
+	 */
+	public static long estimateBytes(Tree tree, int count) {
+
+		Tree settings = new Tree(tree);
+		long bytes = 0;
+		for (int i = 0; i < count; i++) {
+			double near = (i + 1.0) / (count + 1.0);
+			double scale = MIN_SCALE + near * (1 - MIN_SCALE);
+			settings.setMaxSegments(ForestGenerator.segmentsFor(tree.getMaxSegments(), scale));
+			bytes += TreeGenerator.estimateBytes(settings);
+		}
+		return bytes;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that works out the box of tree i in the
+	 * coordinates of the forest.
+	 *
+	 * @param geometry
+	 * @param x
+	 * @param y
+	 * @param scale
+	 * @param i
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	private static void findBounds(TreeGeometry geometry, float x, float y, float scale, int i, float[] minX,
+			float[] minY, float[] maxX, float[] maxY) {
+
+		SegmentBuffer branches = geometry.getBranches();
+		float left = 0;
+		float top = 0;
+		float right = 0;
+		float bottom = 0;
+		for (int b = 0; b < branches.size(); b++) {
+			left = Math.min(left, Math.min(branches.x1(b), branches.x2(b)));
+			top = Math.min(top, Math.min(branches.y1(b), branches.y2(b)));
+			right = Math.max(right, Math.max(branches.x1(b), branches.x2(b)));
+			bottom = Math.max(bottom, Math.max(branches.y1(b), branches.y2(b)));
+		}
+
+		/*
+		 * The trunk has the widest stroke.
+		 */
+		float reach = (branches.size() > 0 ? branches.stroke(0) / 2f : 0) + SpatialIndex.LEAF_REACH;
+		minX[i] = x + (left - reach) * scale;
+		minY[i] = y + (top - reach) * scale;
+		maxX[i] = x + (right + reach) * scale;
+		maxY[i] = y + (bottom + reach) * scale;
+
+	}
+
+	/**
+	 *
+	 * Asks the generator to stop. This can be called from any thread, and
+	 * generate() will then throw a CancellationException once the trees being
+	 * generated are done.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 *
+	 * Sets the fork-join pool that the trees are generated in. By default the
+	 * common pool is used.
+	 *
+	 * @param pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+}
@@ -0,0 +1,296 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This class keeps the frames of the last trees that were generated, so that
+ * going back to settings that were shown before shows the same frame again
+ * instead of generating and drawing the tree again. A frame holds the whole
+ * tree: its geometry, its layers, its LevelOfDetail and its SpatialIndex.
+ *
+ * Frames are found by a Key made of every setting of the Tree, its seed,
+ * where it is planted, how many levels are shown and the size of the image,
+ * so a frame is only used again for exactly the same picture. The revisions of
+ * the Tree are not part of the key, since they count changes rather than
+ * describe the tree.
+ *
+ * The cache holds frames up to a budget of bytes. When a new frame does not
+ * fit, the frames that were used least recently are dropped until it does. A
+ * frame larger than the whole budget is not kept. Frames share their geometry
+ * and layers with the frames they were made from (see RenderScheduler), and a
+ * shared part is counted for every frame holding it, so the cache can hold
+ * less than its budget but never more. The SpatialIndex of a frame is only
+ * built when it is needed (see TreeFrame.getIndex()), so a frame is measured
+ * again every time it is found, and the frames used least recently are dropped
+ * if it has grown past the budget.
+ *
+ * The cache counts its hits, misses and evictions. It can be used from any
+ * thread.
+ *
+ * @author frankdesilets
+ *
+ */
+public class FrameCache {
+
+	private final long budget;
+	private final LinkedHashMap<Key, TreeFrame> frames = new LinkedHashMap<Key, TreeFrame>(16, 0.75f, true);
+	private final Map<Key, Long> sizes = new HashMap<Key, Long>();
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 *
+	 * Creates an empty cache that holds frames of at most budget bytes together.
+	 *
+	 * @param budget
+	 */
+	public FrameCache(long budget) {
+
+		this.budget = Math.max(budget, 0);
+
+	}
+
+	/**
+	 *
+	 * Returns the key for the frame of a tree with the settings of tree, planted
+	 * at x and y, with levels levels shown in an image of width x height.
+	 *
+	 * @param tree
+	 * @param x
+	 * @param y
+	 * @param levels
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static Key key(Tree tree, int x, int y, int levels, int width, int height) {
+
+		return new Key(tree, x, y, levels, width, height);
+
+	}
+
+	/**
+	 *
+	 * Returns the frame kept for key and counts a hit, or returns null and counts
+	 * a miss. The frame is measured again, in case its index has been built since
+	 * it was kept.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public synchronized TreeFrame get(Key key) {
+
+		TreeFrame frame = frames.get(key);
+		if (frame == null) {
+			this.misses++;
+			return null;
+		}
+
+		this.hits++;
+		long size = FrameCache.bytesOf(frame);
+		long kept = sizes.put(key, size);
+		this.bytes += size - kept;
+		this.evict(0);
+		return frame;
+
+	}
+
+	/**
+	 *
+	 * Keeps frame under key, dropping the frames used least recently until it
+	 * fits the budget.
+	 *
+	 * @param key
+	 * @param frame
+	 */
+	public synchronized void put(Key key, TreeFrame frame) {
+
+		long size = FrameCache.bytesOf(frame);
+		this.remove(key);
+		if (size > budget) {
+			return;
+		}
+
+		this.evict(size);
+		frames.put(key, frame);
+		sizes.put(key, size);
+		this.bytes += size;
+
+	}
+
+	/**
+	 *
+	 * Drops every frame. The counts are kept.
+	 */
+	public synchronized void clear() {
+
+		frames.clear();
+		sizes.clear();
+		this.bytes = 0;
+
+	}
+
+	/**
+	 *
+	 * Returns about how many bytes a frame takes: the buffers of its geometry,
+	 * its three layers, the bounding boxes of its LevelOfDetail and its
+	 * SpatialIndex, if it has been built.
+	 *
+	 * @param frame
+	 * @return
+	 */
+	public static long bytesOf(TreeFrame frame) {
+
+		TreeGeometry geometry = frame.getGeometry();
+		long branches = geometry.getBranches().capacity();
+		long ovals = geometry.getLeaves().capacity() + geometry.getFruit().capacity();
+		long layers = 3L * 4 * frame.getWidth() * frame.getHeight();
+		SpatialIndex index = frame.getBuiltIndex();
+		return branches * SegmentBuffer.BYTES_PER_BRANCH + ovals * LeafBuffer.BYTES_PER_OVAL + layers
+				+ 16L * branches + (index == null ? 0 : index.getBytes());
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that drops the frames used least recently
+	 * until another size bytes fit in the budget, or no frames are left.
+	 *
+	 * @param size
+	 */
+	private void evict(long size) {
+
+		Iterator<Key> oldest = frames.keySet().iterator();
+		while (bytes + size > budget && oldest.hasNext()) {
+
+			Key dropped = oldest.next();
+			oldest.remove();
+			this.bytes -= sizes.remove(dropped);
+			this.evictions++;
+
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that drops the frame kept under key, if
+	 * there is one, without counting it as an eviction.
+	 *
+	 * @param key
+	 */
+	private void remove(Key key) {
+
+		if (frames.remove(key) != null) {
+			this.bytes -= sizes.remove(key);
+		}
+
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int size() {
+		return frames.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * The settings a frame was made from. Two keys are equal when every setting
+	 * is the same.
+	 */
+	public static final class Key {
+
+		private final long seed;
+		private final int maxSegments;
+		private final double splitAngle;
+		private final double maxBranchNoise;
+		private final double maxAngleNoise;
+		private final int upperBranchLength;
+		private final int theta;
+		private final int leafParts;
+		private final boolean showFruit;
+		private final Color leafColor;
+		private final Color fruitColor;
+		private final Color branchColor;
+		private final int x;
+		private final int y;
+		private final int levels;
+		private final int width;
+		private final int height;
+
+		private Key(Tree tree, int x, int y, int levels, int width, int height) {
+
+			this.seed = tree.getSeed();
+			this.maxSegments = tree.getMaxSegments();
+			this.splitAngle = tree.getSplitAngle();
+			this.maxBranchNoise = tree.getMaxBranchNoise();
+			this.maxAngleNoise = tree.getMaxAngleNoise();
+			this.upperBranchLength = tree.getUpperBranchLengthForCalculation();
+			this.theta = tree.getTheta();
+			this.leafParts = tree.getLeafParts();
+			this.showFruit = tree.isShowFruit();
+			this.leafColor = tree.getLeafColor();
+			this.fruitColor = tree.getFruitColor();
+			this.branchColor = tree.getBranchColor();
+			this.x = x;
+			this.y = y;
+			this.levels = levels;
+			this.width = width;
+			this.height = height;
+
+		}
+
+		@Override
+		public boolean equals(Object other) {
+
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return seed == key.seed && maxSegments == key.maxSegments
+					&& Double.compare(splitAngle, key.splitAngle) == 0
+					&& Double.compare(maxBranchNoise, key.maxBranchNoise) == 0
+					&& Double.compare(maxAngleNoise, key.maxAngleNoise) == 0
+					&& upperBranchLength == key.upperBranchLength && theta == key.theta
+					&& leafParts == key.leafParts && showFruit == key.showFruit
+					&& Objects.equals(leafColor, key.leafColor) && Objects.equals(fruitColor, key.fruitColor)
+					&& Objects.equals(branchColor, key.branchColor) && x == key.x && y == key.y
+					&& levels == key.levels && width == key.width && height == key.height;
+
+		}
+
+		@Override
+		public int hashCode() {
+
+			return Objects.hash(seed, maxSegments, splitAngle, maxBranchNoise, maxAngleNoise, upperBranchLength,
+					theta, leafParts, showFruit, leafColor, fruitColor, branchColor, x, y, levels, width, height);
+
+		}
+
+	}
+
+}
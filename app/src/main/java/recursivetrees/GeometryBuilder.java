@@ -0,0 +1,235 @@
+package recursivetrees;
+
+import java.awt.Color;
+
+/**
+ * This TreeSink collects the parts of a tree into a SegmentBuffer and two
+ * LeafBuffers, and then builds a TreeGeometry from them. The buffers are sized
+ * for the whole tree up front, and every part is stored at its own index, so
+ * many threads can fill the buffers at once.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class GeometryBuilder implements TreeSink {
+
+	private final SegmentBuffer branches;
+	private final LeafBuffer leaves;
+	private final LeafBuffer fruit;
+	private final boolean[] hasFruit;
+	private final int branchCount;
+	private final int firstLeafBranch;
+	private final int leavesPerBranch;
+	private Color branchColor;
+	private Color[] leafPalette;
+	private Color[] fruitPalette;
+
+	/*
+	 * When a builder extends an earlier tree, these many branches, leaves and fruit
+	 * come from it and must not be stored again. The fruit of the first
+	 * keptFruitSlots branch ends is kept.
+	 */
+	private final int keptBranches;
+	private final int keptLeaves;
+	private final int keptFruitSlots;
+	private final int keptFruit;
+
+	/**
+	 * 
+	 * Creates a builder for a tree with the given amount of segments, where
+	 * leaves appear once fewer than leavesAppear segments remain, and every
+	 * branch end carries leavesPerBranch leaves.
+	 * 
+	 * @param maxSegments
+	 * @param leavesAppear
+	 * @param leavesPerBranch
+	 */
+	public GeometryBuilder(int maxSegments, int leavesAppear, int leavesPerBranch) {
+
+		this(new SegmentBuffer(maxSegments),
+				new LeafBuffer(Math.multiplyExact(LeafBuffer.leafBranchCount(maxSegments, leavesAppear), leavesPerBranch)),
+				new LeafBuffer(LeafBuffer.leafBranchCount(maxSegments, leavesAppear)),
+				SegmentBuffer.branchCount(maxSegments) - LeafBuffer.leafBranchCount(maxSegments, leavesAppear),
+				leavesPerBranch);
+
+	}
+
+	/**
+	 * 
+	 * Creates a builder that stores a tree in buffers that already exist, such as
+	 * the slices handed out by a GeometryPool. The branch buffer holds every branch
+	 * of the tree, and the fruit buffer has one slot for every branch end from
+	 * firstLeafBranch on.
+	 * 
+	 * @param branches
+	 * @param leaves
+	 * @param fruit
+	 * @param firstLeafBranch
+	 * @param leavesPerBranch
+	 */
+	GeometryBuilder(SegmentBuffer branches, LeafBuffer leaves, LeafBuffer fruit, int firstLeafBranch,
+			int leavesPerBranch) {
+
+		this.leavesPerBranch = leavesPerBranch;
+		this.branchCount = branches.capacity();
+		this.firstLeafBranch = firstLeafBranch;
+		this.branches = branches;
+		this.leaves = leaves;
+		this.fruit = fruit;
+		this.hasFruit = new boolean[fruit.capacity()];
+		this.keptBranches = 0;
+		this.keptLeaves = 0;
+		this.keptFruitSlots = 0;
+		this.keptFruit = 0;
+
+	}
+
+	/**
+	 * 
+	 * Creates a builder that extends an earlier tree to branchCount branches.
+	 * The branches of the earlier tree are kept, and so are its leaves if
+	 * keepLeaves is true and its fruit if keepFruit is true, and only what is new
+	 * is collected. With branchCount equal to the size of the earlier tree, only
+	 * its decoration is made again.
+	 * 
+	 * Kept branches and leaves are shared with the earlier tree, not copied. New
+	 * ones are stored past the end of the earlier buffers, where the earlier tree
+	 * never looks, so it does not change. Another tree grown from the same
+	 * earlier tree stores into the same places, but it stores the same values,
+	 * since a branch and its leaves only depend on the seed and the index of the
+	 * branch, so trees that share the buffers never see each other's changes.
+	 * The tree must therefore be grown with the branch settings of the earlier
+	 * tree, and with the same leaves per branch if keepLeaves is true.
+	 * 
+	 * If nothing is added to a buffer, the new tree gets the very same buffer,
+	 * which lets a LevelOfDetail or SpatialIndex tell that it can share its work
+	 * with the earlier tree. This needs the earlier buffers to have room for the
+	 * whole tree, as they do when the earlier tree was made by a GeometryBuilder.
+	 * Kept fruit is copied, since new fruit is moved around when the tree is
+	 * built.
+	 * 
+	 * @param earlier
+	 * @param branchCount
+	 * @param leavesPerBranch
+	 * @param keepLeaves
+	 * @param keepFruit
+	 */
+	GeometryBuilder(TreeGeometry earlier, int branchCount, int leavesPerBranch, boolean keepLeaves,
+			boolean keepFruit) {
+
+		SegmentBuffer earlierBranches = earlier.getBranches();
+		if (branchCount < earlierBranches.size() || branchCount > earlierBranches.capacity()) {
+			throw new IllegalArgumentException("A tree of " + earlierBranches.size() + " branches cannot be extended to "
+					+ branchCount + " branches.");
+		}
+
+		this.branchCount = branchCount;
+		this.firstLeafBranch = earlier.getFirstLeafBranch();
+		this.leavesPerBranch = leavesPerBranch;
+		this.keptBranches = earlierBranches.size();
+		if (branchCount == keptBranches) {
+			this.branches = earlierBranches;
+		} else {
+			this.branches = new SegmentBuffer(earlierBranches);
+		}
+
+		/*
+		 * The leaf and fruit slots are counted for the whole tree, so that the tree
+		 * can be extended again.
+		 */
+		int leafSlots = Math.max(earlierBranches.capacity() - firstLeafBranch, 0);
+		if (keepLeaves) {
+			this.keptLeaves = earlier.getLeaves().size();
+			if (branchCount == keptBranches) {
+				this.leaves = earlier.getLeaves();
+			} else {
+				this.leaves = new LeafBuffer(earlier.getLeaves());
+			}
+		} else {
+			this.leaves = new LeafBuffer(Math.multiplyExact(leafSlots, leavesPerBranch));
+			this.keptLeaves = 0;
+		}
+
+		this.fruit = new LeafBuffer(leafSlots);
+		this.hasFruit = new boolean[leafSlots];
+		if (keepFruit) {
+			LeafBuffer earlierFruit = earlier.getFruit();
+			for (int i = 0; i < earlierFruit.size(); i++) {
+				fruit.set(i, earlierFruit.x(i), earlierFruit.y(i), earlierFruit.rotation(i), earlierFruit.color(i));
+			}
+			this.keptFruitSlots = Math.max(keptBranches - firstLeafBranch, 0);
+			this.keptFruit = earlierFruit.size();
+		} else {
+			this.keptFruitSlots = 0;
+			this.keptFruit = 0;
+		}
+
+	}
+
+	@Override
+	public void start(Color branchColor, Color[] leafPalette, Color[] fruitPalette) {
+
+		this.branchColor = branchColor;
+		this.leafPalette = leafPalette;
+		this.fruitPalette = fruitPalette;
+
+	}
+
+	@Override
+	public void branch(int i, int x1, int y1, int x2, int y2, int stroke, int depth) {
+
+		if (i < keptBranches) {
+			throw new IllegalStateException("Branch " + i + " is kept from the earlier tree.");
+		}
+		branches.set(i, x1, y1, x2, y2, stroke, depth);
+
+	}
+
+	@Override
+	public void leaf(int slot, int x, int y, float rotation, int color) {
+
+		if (slot < keptLeaves) {
+			throw new IllegalStateException("Leaf " + slot + " is kept from the earlier tree.");
+		}
+		leaves.set(slot, x, y, rotation, color);
+
+	}
+
+	@Override
+	public void fruit(int slot, int x, int y, float rotation, int color) {
+
+		if (slot < keptFruitSlots) {
+			throw new IllegalStateException("The fruit of branch end " + slot + " is kept from the earlier tree.");
+		}
+		fruit.set(slot, x, y, rotation, color);
+		hasFruit[slot] = true;
+
+	}
+
+	SegmentBuffer getBranches() {
+		return branches;
+	}
+
+	/**
+	 * 
+	 * Returns the finished TreeGeometry. The new fruit is moved together first,
+	 * since only some of its slots were used. This is called once, after generation.
+	 * 
+	 * @return
+	 */
+	public TreeGeometry build() {
+
+		if (branches.size() != branchCount) {
+			branches.setSize(branchCount);
+		}
+		int leafCount = Math.max(branchCount - firstLeafBranch, 0) * leavesPerBranch;
+		if (leaves.size() != leafCount) {
+			leaves.setSize(leafCount);
+		}
+		fruit.compact(hasFruit, keptFruitSlots, keptFruit);
+		return new TreeGeometry(branches, leaves, fruit, firstLeafBranch, leavesPerBranch, branchColor, leafPalette,
+				fruitPalette);
+
+	}
+
+}
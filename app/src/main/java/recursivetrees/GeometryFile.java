@@ -0,0 +1,415 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class saves a generated tree to a binary file and loads it again, so a
+ * large tree does not have to be generated again to be painted.
+ *
+ * A file starts with a header holding the settings and seed of the Tree and the
+ * colors, sizes and leaf layout of the TreeGeometry, so a tree that has not
+ * grown all of its levels yet is saved as it is. After it come the values of
+ * the branches, leaves and fruit, one column at a time in the same order as in
+ * the SegmentBuffer and LeafBuffer, so x1 of every branch, then y1 of every
+ * branch, and so on. Everything is little-endian, and every column starts at a
+ * multiple of 8 bytes.
+ *
+ * When a file is loaded, only the header is read. Each column is memory-mapped
+ * and the buffers of the loaded TreeGeometry are views of the mappings, so the
+ * values are not copied onto the heap and the operating system only reads the
+ * parts of the file that are used. The mappings are read-only. A single column
+ * can be at most 2 GB, which allows trees of up to 29 segments.
+ *
+ * @author frankdesilets
+ *
+ */
+public class GeometryFile {
+
+	/*
+	 * "RTGF" for Recursive Trees geometry file, followed by the version of the
+	 * format. The version goes up whenever the layout changes, and only files of
+	 * the version this class knows are loaded. Version 2 added the leaf layout.
+	 */
+	public static final int MAGIC = 0x52544746;
+	public static final int VERSION = 2;
+
+	/*
+	 * The size of the direct buffer that columns are copied through when a file is
+	 * written.
+	 */
+	private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+	private final Tree tree;
+	private final TreeGeometry geometry;
+
+	private GeometryFile(Tree tree, TreeGeometry geometry) {
+
+		this.tree = tree;
+		this.geometry = geometry;
+
+	}
+
+	/**
+	 *
+	 * Writes a tree and the geometry generated from it to a file, replacing it if
+	 * it exists. The file is written to its PartFile first, so a file that was
+	 * there before is only replaced once the new one is complete.
+	 *
+	 * @param file
+	 * @param tree
+	 * @param geometry
+	 * @throws IOException
+	 */
+	public static void write(Path file, Tree tree, TreeGeometry geometry) throws IOException {
+
+		Path part = PartFile.of(file);
+		try {
+			try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+
+				ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+				/*
+				 * The header is small, so it is put together in the buffer and written in
+				 * one go, padded to a multiple of 8 bytes.
+				 */
+				GeometryFile.putHeader(buffer, tree, geometry);
+				while (buffer.position() % 8 != 0) {
+					buffer.put((byte) 0);
+				}
+				buffer.flip();
+				GeometryFile.writeFully(channel, buffer);
+
+				GeometryFile.writeColumns(channel, buffer, geometry.getBranches().columns(),
+						geometry.getBranches().size());
+				GeometryFile.writeColumns(channel, buffer, geometry.getLeaves().columns(), geometry.getLeaves().size());
+				GeometryFile.writeColumns(channel, buffer, geometry.getFruit().columns(), geometry.getFruit().size());
+
+			}
+			PartFile.moveIntoPlace(part, file);
+		} catch (IOException | RuntimeException e) {
+			PartFile.delete(part, e);
+			throw e;
+		}
+
+	}
+
+	/**
+	 *
+	 * Loads a file written by write(). Throws an IOException if the file is not a
+	 * geometry file, was written by another version, has a header that does not
+	 * describe a tree, or is cut short.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static GeometryFile load(Path file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			/*
+			 * The header is mapped on its own. Its length depends on the size of the leaf
+			 * palette, so the most that it could be is mapped.
+			 */
+			long fileSize = channel.size();
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, 4096));
+			header.order(ByteOrder.LITTLE_ENDIAN);
+
+			try {
+
+				if (header.getInt() != MAGIC) {
+					throw new IOException(file + " is not a tree geometry file.");
+				}
+				int version = header.getInt();
+				if (version != VERSION) {
+					throw new IOException(file + " was saved by another version (" + version + ").");
+				}
+
+				Tree tree = GeometryFile.getTree(header);
+				if (tree.getMaxSegments() < 1 || tree.getMaxSegments() > SegmentBuffer.MAX_LEVELS) {
+					throw new IOException(file + " has a tree of " + tree.getMaxSegments() + " segments.");
+				}
+				Color branchColor = new Color(header.getInt(), true);
+				Color[] leafPalette = GeometryFile.getPalette(header);
+				Color[] fruitPalette = GeometryFile.getPalette(header);
+				int branchCount = header.getInt();
+				int leafCount = header.getInt();
+				int fruitCount = header.getInt();
+				int firstLeafBranch = header.getInt();
+				int leavesPerBranch = header.getInt();
+				GeometryFile.checkSizes(file, tree.getMaxSegments(), branchCount, leafCount, fruitCount,
+						firstLeafBranch, leavesPerBranch);
+				long position = GeometryFile.align(header.position());
+
+				/*
+				 * Every column is mapped on its own, which is what keeps a column to 2 GB.
+				 */
+				FloatBuffer[] branchFloats = new FloatBuffer[4];
+				for (int i = 0; i < branchFloats.length; i++) {
+					branchFloats[i] = GeometryFile.map(channel, position, branchCount).asFloatBuffer();
+					position = GeometryFile.align(position + 4L * branchCount);
+				}
+				IntBuffer stroke = GeometryFile.map(channel, position, branchCount).asIntBuffer();
+				position = GeometryFile.align(position + 4L * branchCount);
+				IntBuffer depth = GeometryFile.map(channel, position, branchCount).asIntBuffer();
+				position = GeometryFile.align(position + 4L * branchCount);
+				SegmentBuffer branches = new SegmentBuffer(branchFloats[0], branchFloats[1], branchFloats[2],
+						branchFloats[3], stroke, depth);
+
+				LeafBuffer[] ovals = new LeafBuffer[2];
+				int[] counts = { leafCount, fruitCount };
+				for (int i = 0; i < ovals.length; i++) {
+
+					FloatBuffer[] floats = new FloatBuffer[3];
+					for (int j = 0; j < floats.length; j++) {
+						floats[j] = GeometryFile.map(channel, position, counts[i]).asFloatBuffer();
+						position = GeometryFile.align(position + 4L * counts[i]);
+					}
+					IntBuffer color = GeometryFile.map(channel, position, counts[i]).asIntBuffer();
+					position = GeometryFile.align(position + 4L * counts[i]);
+					ovals[i] = new LeafBuffer(floats[0], floats[1], floats[2], color);
+
+				}
+
+				TreeGeometry geometry = new TreeGeometry(branches, ovals[0], ovals[1], firstLeafBranch,
+						leavesPerBranch, branchColor, leafPalette, fruitPalette);
+				return new GeometryFile(tree, geometry);
+
+			} catch (BufferUnderflowException e) {
+				throw new IOException(file + " is cut short.", e);
+			}
+
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that puts the header in the buffer.
+	 *
+	 * @param buffer
+	 * @param tree
+	 * @param geometry
+	 */
+	private static void putHeader(ByteBuffer buffer, Tree tree, TreeGeometry geometry) {
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+
+		/*
+		 * The settings of the tree.
+		 */
+		buffer.putLong(tree.getSeed());
+		buffer.putInt(tree.getMaxSegments());
+		buffer.putDouble(tree.getSplitAngle());
+		buffer.putDouble(tree.getMaxBranchNoise());
+		buffer.putDouble(tree.getMaxAngleNoise());
+		buffer.putInt(tree.getUpperBranchLengthForCalculation());
+		buffer.putInt(tree.getTheta());
+		buffer.putInt(tree.getLeafParts());
+		buffer.putInt(tree.isShowFruit() ? 1 : 0);
+		buffer.putInt(tree.getLeafColor().getRGB());
+		buffer.putInt(tree.getFruitColor().getRGB());
+		buffer.putInt(tree.getBranchColor().getRGB());
+
+		/*
+		 * The colors and sizes of the geometry.
+		 */
+		buffer.putInt(geometry.getBranchColor().getRGB());
+		GeometryFile.putPalette(buffer, geometry.getLeafPalette());
+		GeometryFile.putPalette(buffer, geometry.getFruitPalette());
+		buffer.putInt(geometry.getBranches().size());
+		buffer.putInt(geometry.getLeaves().size());
+		buffer.putInt(geometry.getFruit().size());
+		buffer.putInt(geometry.getFirstLeafBranch());
+		buffer.putInt(geometry.getLeavesPerBranch());
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that throws an IOException unless the sizes
+	 * read from the header are those of a tree of maxSegments segments: whole
+	 * levels of branches, no more than maxSegments of them, and as many leaves as
+	 * the branches from firstLeafBranch on carry, with at most one fruit each.
+	 *
+	 * @param file
+	 * @param maxSegments
+	 * @param branchCount
+	 * @param leafCount
+	 * @param fruitCount
+	 * @param firstLeafBranch
+	 * @param leavesPerBranch
+	 * @throws IOException
+	 */
+	private static void checkSizes(Path file, int maxSegments, int branchCount, int leafCount, int fruitCount,
+			int firstLeafBranch, int leavesPerBranch) throws IOException {
+
+		if (branchCount < 1 || branchCount > SegmentBuffer.branchCount(maxSegments)
+				|| (branchCount & (branchCount + 1)) != 0) {
+			throw new IOException(file + " has " + branchCount + " branches, which is not a whole tree of up to "
+					+ maxSegments + " levels.");
+		}
+		if (firstLeafBranch < 0 || firstLeafBranch > SegmentBuffer.branchCount(maxSegments) || leavesPerBranch < 0
+				|| leavesPerBranch > 3) {
+			throw new IOException(file + " has a leaf layout that is not valid.");
+		}
+		long leafSlots = Math.max(branchCount - firstLeafBranch, 0);
+		if (leafCount != leafSlots * leavesPerBranch || fruitCount < 0 || fruitCount > leafSlots) {
+			throw new IOException(file + " has " + leafCount + " leaves and " + fruitCount
+					+ " fruit, which do not match its " + branchCount + " branches.");
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that reads the settings of the tree from
+	 * the header.
+	 *
+	 * @param header
+	 * @return
+	 */
+	private static Tree getTree(ByteBuffer header) {
+
+		Tree tree = new Tree();
+		tree.setSeed(header.getLong());
+		tree.setMaxSegments(header.getInt());
+		tree.setSplitAngle(header.getDouble());
+		tree.setMaxBranchNoise(header.getDouble());
+		tree.setMaxAngleNoise(header.getDouble());
+		tree.setUpperBranchLengthForCalculation(header.getInt());
+		tree.setTheta(header.getInt());
+		tree.setLeafParts(header.getInt());
+		tree.setShowFruit(header.getInt() != 0);
+		tree.setLeafColor(new Color(header.getInt(), true));
+		tree.setFruitColor(new Color(header.getInt(), true));
+		tree.setBranchColor(new Color(header.getInt(), true));
+		return tree;
+
+	}
+
+	private static void putPalette(ByteBuffer buffer, Color[] palette) {
+
+		buffer.putInt(palette.length);
+		for (Color color : palette) {
+			buffer.putInt(color.getRGB());
+		}
+
+	}
+
+	private static Color[] getPalette(ByteBuffer header) throws IOException {
+
+		int length = header.getInt();
+		if (length < 0 || length > header.remaining() / 4) {
+			throw new IOException("The palette of the file is not valid.");
+		}
+		Color[] palette = new Color[length];
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = new Color(header.getInt(), true);
+		}
+		return palette;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that writes the first count values of every
+	 * column, padding each one to a multiple of 8 bytes. The values are copied
+	 * through the direct buffer a megabyte at a time.
+	 *
+	 * @param channel
+	 * @param buffer
+	 * @param columns
+	 * @param count
+	 * @throws IOException
+	 */
+	private static void writeColumns(FileChannel channel, ByteBuffer buffer, Buffer[] columns, int count)
+			throws IOException {
+
+		int valuesPerWrite = WRITE_BUFFER_BYTES / 4;
+
+		for (Buffer column : columns) {
+
+			for (int start = 0; start < count; start += valuesPerWrite) {
+
+				int length = Math.min(valuesPerWrite, count - start);
+				buffer.clear();
+				if (column instanceof FloatBuffer) {
+					buffer.asFloatBuffer().put(((FloatBuffer) column).slice(start, length));
+				} else {
+					buffer.asIntBuffer().put(((IntBuffer) column).slice(start, length));
+				}
+				buffer.limit(4 * length);
+				GeometryFile.writeFully(channel, buffer);
+
+			}
+
+			if (count % 2 != 0) {
+				buffer.clear();
+				buffer.putInt(0);
+				buffer.flip();
+				GeometryFile.writeFully(channel, buffer);
+			}
+
+		}
+
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that maps a column of count values starting
+	 * at the given position.
+	 *
+	 * @param channel
+	 * @param position
+	 * @param count
+	 * @return
+	 * @throws IOException
+	 */
+	private static ByteBuffer map(FileChannel channel, long position, int count) throws IOException {
+
+		long bytes = 4L * count;
+		if (count < 0 || bytes > Integer.MAX_VALUE) {
+			throw new IOException("A column of " + count + " values is too large to load.");
+		}
+		if (position + bytes > channel.size()) {
+			throw new IOException("The file is cut short.");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	public Tree getTree() {
+		return tree;
+	}
+
+	public TreeGeometry getGeometry() {
+		return geometry;
+	}
+
+}
@@ -0,0 +1,166 @@
+package recursivetrees;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class hands out the buffers for many small trees, such as the trees of
+ * a Forest, from a few large arrays instead of giving every tree arrays of its
+ * own. The values of a tree are stored in a slice of a shared float array and a
+ * slice of a shared int array, one slice per column, so a thousand trees take
+ * a handful of arrays of CHUNK_VALUES values instead of fourteen thousand.
+ *
+ * When the trees are no longer needed, reset() hands the same arrays out
+ * again, so generating the next forest does not allocate anything new unless
+ * it is bigger. Every tree made from a pool is only good until the pool is
+ * reset, since its values are then written over. The arrays are kept until
+ * trim() lets go of the ones that are not being used, so a pool that once held
+ * a big forest does not keep all of its memory.
+ *
+ * Trees can be made from many threads at once.
+ *
+ * @author frankdesilets
+ *
+ */
+public class GeometryPool {
+
+	/*
+	 * How many values each shared array holds, 4 MB worth. A column longer than
+	 * this gets an array of its own size.
+	 */
+	public static final int CHUNK_VALUES = 1 << 20;
+
+	private final List<float[]> floatChunks = new ArrayList<float[]>();
+	private final List<int[]> intChunks = new ArrayList<int[]>();
+	private int floatChunk; // the array values are being handed out from
+	private int floatsUsed; // how much of it has been handed out
+	private int intChunk;
+	private int intsUsed;
+
+	/**
+	 *
+	 * Returns a builder for a tree with the given amount of segments, like the
+	 * public GeometryBuilder constructor, whose buffers are slices of the pool.
+	 *
+	 * @param maxSegments
+	 * @param leavesAppear
+	 * @param leavesPerBranch
+	 * @return
+	 */
+	public synchronized GeometryBuilder builder(int maxSegments, int leavesAppear, int leavesPerBranch) {
+
+		int branchCount = SegmentBuffer.branchCount(maxSegments);
+		int leafBranches = LeafBuffer.leafBranchCount(maxSegments, leavesAppear);
+		int leafCount = Math.multiplyExact(leafBranches, leavesPerBranch);
+
+		SegmentBuffer branches = new SegmentBuffer(this.floats(branchCount), this.floats(branchCount),
+				this.floats(branchCount), this.floats(branchCount), this.ints(branchCount), this.ints(branchCount));
+		LeafBuffer leaves = new LeafBuffer(this.floats(leafCount), this.floats(leafCount), this.floats(leafCount),
+				this.ints(leafCount));
+		LeafBuffer fruit = new LeafBuffer(this.floats(leafBranches), this.floats(leafBranches),
+				this.floats(leafBranches), this.ints(leafBranches));
+		return new GeometryBuilder(branches, leaves, fruit, branchCount - leafBranches, leavesPerBranch);
+
+	}
+
+	/**
+	 *
+	 * Makes all of the arrays free to be handed out again. The trees made from the
+	 * pool so far must not be used after this.
+	 */
+	public synchronized void reset() {
+
+		this.floatChunk = 0;
+		this.floatsUsed = 0;
+		this.intChunk = 0;
+		this.intsUsed = 0;
+
+	}
+
+	/**
+	 *
+	 * Lets go of the arrays that nothing has been handed out from since the last
+	 * reset(), so they can be garbage collected. Trees made from them before the
+	 * reset keep them until the trees are no longer used. After a reset(), this
+	 * lets go of every array.
+	 */
+	public synchronized void trim() {
+
+		int floatsKept = floatsUsed > 0 ? floatChunk + 1 : floatChunk;
+		floatChunks.subList(floatsKept, floatChunks.size()).clear();
+		int intsKept = intsUsed > 0 ? intChunk + 1 : intChunk;
+		intChunks.subList(intsKept, intChunks.size()).clear();
+
+	}
+
+	/**
+	 *
+	 * Returns how many bytes of arrays the pool holds.
+	 *
+	 * @return
+	 */
+	public synchronized long getAllocatedBytes() {
+
+		long bytes = 0;
+		for (float[] chunk : floatChunks) {
+			bytes += 4L * chunk.length;
+		}
+		for (int[] chunk : intChunks) {
+			bytes += 4L * chunk.length;
+		}
+		return bytes;
+
+	}
+
+	/**
+	 *
+	 * Returns how many arrays the pool holds.
+	 *
+	 * @return
+	 */
+	public synchronized int getChunkCount() {
+		return floatChunks.size() + intChunks.size();
+	}
+
+	/**
+	 *
+	 * This is a private helper method that hands out the next count floats. An
+	 * array without room for them is skipped, and a new one is made when there are
+	 * no more.
+	 *
+	 * @param count
+	 * @return
+	 */
+	private FloatBuffer floats(int count) {
+
+		while (floatChunk < floatChunks.size() && floatsUsed + count > floatChunks.get(floatChunk).length) {
+			this.floatChunk++;
+			this.floatsUsed = 0;
+		}
+		if (floatChunk == floatChunks.size()) {
+			floatChunks.add(new float[Math.max(CHUNK_VALUES, count)]);
+		}
+		FloatBuffer slice = FloatBuffer.wrap(floatChunks.get(floatChunk), floatsUsed, count).slice();
+		this.floatsUsed += count;
+		return slice;
+
+	}
+
+	private IntBuffer ints(int count) {
+
+		while (intChunk < intChunks.size() && intsUsed + count > intChunks.get(intChunk).length) {
+			this.intChunk++;
+			this.intsUsed = 0;
+		}
+		if (intChunk == intChunks.size()) {
+			intChunks.add(new int[Math.max(CHUNK_VALUES, count)]);
+		}
+		IntBuffer slice = IntBuffer.wrap(intChunks.get(intChunk), intsUsed, count).slice();
+		this.intsUsed += count;
+		return slice;
+
+	}
+
+}
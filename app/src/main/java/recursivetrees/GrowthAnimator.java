@@ -0,0 +1,327 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+/**
+ * This class animates the tree on a TreeCanvas growing from the trunk up, for
+ * the Grow Tree feature. A Swing Timer ticks about 60 times a second, and every
+ * tick moves the growth on by the time that has passed and repaints the
+ * canvas. The canvas then paints the tree through the LevelOfDetail of its
+ * frame, as far as it has grown, so the branches of the level that is growing
+ * get longer smoothly instead of appearing one level at a time.
+ *
+ * Every frame has a time budget for painting. When painting a frame takes
+ * longer than the budget, the detail threshold of the LevelOfDetail is raised,
+ * so more of the small branches are drawn as dots, and when it takes much less
+ * the threshold is lowered again. A deep tree therefore keeps growing at the
+ * full frame rate, with less detail, instead of dropping frames. While the
+ * animation runs, the time it takes to paint a frame and the frame rate are
+ * shown in the corner of the canvas, and every frame is recorded as a
+ * GrowthFrameEvent for the Java Flight Recorder.
+ *
+ * As the tree grows it goes through the stages the Grow Tree feature has
+ * always had: bare branches for the first three levels, two leaf parts at
+ * levels 4 and 5, three leaf parts and yellow fruit at levels 6 and 7, and red
+ * fruit from level 8 on. The leaf and fruit settings of the Tree are changed to
+ * those of each stage, and put back when the animation stops.
+ *
+ * If the frame on the canvas does not have the levels that are growing yet,
+ * the canvas is asked for a few more levels at a time (see
+ * TreeCanvas.setLevels()), and growth waits for them where it is.
+ *
+ * @author frankdesilets
+ *
+ */
+public class GrowthAnimator {
+
+	/*
+	 * The timer ticks every 16 milliseconds, for about 60 frames a second, and
+	 * every level takes LEVEL_MILLIS to grow.
+	 */
+	public static final int FRAME_MILLIS = 16;
+	public static final int LEVEL_MILLIS = 600;
+
+	/*
+	 * How long painting a frame may take. The rest of the frame is left for Swing
+	 * and the render thread.
+	 */
+	public static final double FRAME_BUDGET_MILLIS = 10;
+
+	/*
+	 * How far the detail threshold goes up when a frame is over budget, and the
+	 * most it can be, in pixels.
+	 */
+	private static final float THRESHOLD_STEP = 1.5f;
+	private static final float MAX_THRESHOLD = 256;
+
+	/*
+	 * How much of the averages shown in the readout comes from the newest frame.
+	 */
+	private static final double AVERAGE_WEIGHT = 0.1;
+
+	/*
+	 * The levels at which the stages of growth start.
+	 */
+	public static final int DOUBLE_LEAF_AGE = 4;
+	public static final int YELLOW_FRUIT_AGE = 6;
+	public static final int RED_FRUIT_AGE = 8;
+
+	private final TreeCanvas canvas;
+	private final Timer timer;
+	private float levels; // how far the tree has grown, in levels
+	private long lastTick;
+	private float threshold;
+	private double paintMillis; // the average time painting a frame took
+	private double frameMillis; // the average time between two painted frames
+	private long lastPaint;
+
+	/*
+	 * The settings changed by the stages, as they were before the animation, and
+	 * the fruit colors of the stages, picked once per animation.
+	 */
+	private boolean staged;
+	private int leafParts;
+	private boolean showFruit;
+	private Color fruitColor;
+	private Color yellowFruit;
+	private Color redFruit;
+
+	public GrowthAnimator(TreeCanvas canvas) {
+
+		this.canvas = canvas;
+		this.timer = new Timer(FRAME_MILLIS, new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+
+				GrowthAnimator.this.tick();
+
+			}
+
+		});
+		timer.setCoalesce(true); // ticks that pile up while a frame is slow are dropped
+
+	}
+
+	/**
+	 *
+	 * Starts growing the tree of the canvas from nothing. If the tree is already
+	 * growing, it starts over.
+	 */
+	public void start() {
+
+		Tree tree = canvas.getTree();
+		if (!staged) {
+			this.leafParts = tree.getLeafParts();
+			this.showFruit = tree.isShowFruit();
+			this.fruitColor = tree.getFruitColor();
+			this.staged = true;
+		}
+		this.yellowFruit = tree.yellowFruitColor();
+		this.redFruit = tree.redFruitColor();
+		this.applyStage(1);
+
+		this.levels = 0;
+		this.lastTick = System.nanoTime();
+		this.threshold = LevelOfDetail.DEFAULT_THRESHOLD;
+		this.paintMillis = 0;
+		this.frameMillis = 0;
+		this.lastPaint = 0;
+
+		/*
+		 * The frame that is shown can be used if it is the whole tree with the current
+		 * settings. Otherwise the tree is grown onto the canvas level by level.
+		 */
+		if (this.availableLevels() < canvas.getTree().getMaxSegments()) {
+			canvas.setLevels(1);
+		}
+		timer.start();
+		canvas.repaint();
+
+	}
+
+	/**
+	 *
+	 * Stops the animation, puts back the settings the stages changed, and shows
+	 * the whole tree.
+	 */
+	public void stop() {
+
+		timer.stop();
+		if (staged) {
+			Tree tree = canvas.getTree();
+			tree.setLeafParts(leafParts);
+			tree.setShowFruit(showFruit);
+			tree.setFruitColor(fruitColor);
+			this.staged = false;
+		}
+		canvas.setLevels(0);
+		canvas.repaint();
+
+	}
+
+	public boolean isRunning() {
+		return timer.isRunning();
+	}
+
+	/**
+	 *
+	 * This is a private helper method that moves the growth on by the time since
+	 * the last tick, as far as the frame on the canvas allows, and asks the canvas
+	 * for more levels if it needs them.
+	 */
+	private void tick() {
+
+		long now = System.nanoTime();
+		float step = (now - lastTick) / 1e6f / LEVEL_MILLIS;
+		this.lastTick = now;
+
+		int maxLevels = canvas.getTree().getMaxSegments();
+		this.levels = Math.min(levels + step, Math.min(this.availableLevels(), maxLevels));
+		if (levels >= maxLevels) {
+			this.stop();
+			return;
+		}
+		this.applyStage((int) levels + 1);
+
+		/*
+		 * While the canvas is being grown, it is kept two levels ahead of the level
+		 * that is growing, so the next one is usually ready in time.
+		 */
+		if (canvas.getLevels() != 0) {
+			canvas.setLevels(Math.min((int) levels + 3, maxLevels));
+		}
+		canvas.repaint();
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that sets the leaf and fruit settings of
+	 * the Tree to those of the stage the tree is in while its level age grows.
+	 * The Tree only counts a new revision when a setting actually changes, so
+	 * the canvas only asks for new leaves and fruit when a new stage starts.
+	 *
+	 * @param age
+	 */
+	private void applyStage(int age) {
+
+		Tree tree = canvas.getTree();
+		if (age >= RED_FRUIT_AGE) {
+			tree.setLeafParts(3);
+			tree.setShowFruit(true);
+			tree.setFruitColor(redFruit);
+		} else if (age >= YELLOW_FRUIT_AGE) {
+			tree.setLeafParts(3);
+			tree.setShowFruit(true);
+			tree.setFruitColor(yellowFruit);
+		} else if (age >= DOUBLE_LEAF_AGE) {
+			tree.setLeafParts(2);
+			tree.setShowFruit(false);
+		} else {
+			tree.setLeafParts(leafParts);
+			tree.setShowFruit(false);
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns how many levels the frame on
+	 * the canvas has, or 0 if its branches were made from older settings. A frame
+	 * whose leaves or fruit are of an earlier stage still has its levels.
+	 *
+	 * @return
+	 */
+	private int availableLevels() {
+
+		TreeFrame frame = canvas.getFrame();
+		if (frame == null || frame.getGeometryRevision() != canvas.getTree().getGeometryRevision()) {
+			return 0;
+		}
+		return frame.getGeometry().getLevels();
+
+	}
+
+	/**
+	 *
+	 * Paints the tree as far as it has grown, with the view of the canvas already
+	 * set on g2, and changes the detail threshold for the next frame from how long
+	 * this one took. This is called by the canvas while the animation runs.
+	 *
+	 * @param g2
+	 * @param frame
+	 */
+	public void paint(Graphics2D g2, TreeFrame frame) {
+
+		GrowthFrameEvent event = new GrowthFrameEvent(levels, threshold);
+		event.begin();
+		long start = System.nanoTime();
+		frame.getDetail().paint(g2, threshold, levels);
+		long end = System.nanoTime();
+
+		double millis = (end - start) / 1e6;
+		event.setOverBudget(millis > FRAME_BUDGET_MILLIS);
+		event.commit();
+		if (millis > FRAME_BUDGET_MILLIS) {
+			this.threshold = Math.min(threshold * THRESHOLD_STEP, MAX_THRESHOLD);
+		} else if (millis < FRAME_BUDGET_MILLIS / 2) {
+			this.threshold = Math.max(threshold / THRESHOLD_STEP, LevelOfDetail.DEFAULT_THRESHOLD);
+		}
+
+		this.paintMillis = GrowthAnimator.average(paintMillis, millis);
+		if (lastPaint != 0) {
+			this.frameMillis = GrowthAnimator.average(frameMillis, (start - lastPaint) / 1e6);
+		}
+		this.lastPaint = start;
+
+	}
+
+	/**
+	 *
+	 * Draws the frame time readout at x and y, in the coordinates of the canvas.
+	 *
+	 * @param g2
+	 * @param x
+	 * @param y
+	 */
+	public void paintReadout(Graphics2D g2, int x, int y) {
+
+		String text = String.format("%.1f ms to paint, %.0f fps, level %.1f, detail %.0f px", paintMillis,
+				frameMillis > 0 ? 1000 / frameMillis : 0, levels, threshold);
+		g2.setColor(Color.DARK_GRAY);
+		g2.drawString(text, x, y);
+
+	}
+
+	private static double average(double average, double value) {
+
+		if (average == 0) {
+			return value;
+		}
+		return average + (value - average) * AVERAGE_WEIGHT;
+
+	}
+
+	public float getLevels() {
+		return levels;
+	}
+
+	public float getThreshold() {
+		return threshold;
+	}
+
+	public double getPaintMillis() {
+		return paintMillis;
+	}
+
+	public double getFrameMillis() {
+		return frameMillis;
+	}
+
+}
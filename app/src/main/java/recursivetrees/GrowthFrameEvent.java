@@ -0,0 +1,46 @@
+package recursivetrees;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This is the Java Flight Recorder event for painting one frame of the Grow
+ * Tree animation (see GrowthAnimator). It is painted on the Event Dispatch
+ * Thread, so a frame that is over budget in a recording can be matched with
+ * whatever else held up that thread.
+ *
+ * @author frankdesilets
+ *
+ */
+@Name("recursivetrees.GrowthFrame")
+@Label("Growth Frame")
+@Category("Recursive Trees")
+@Description("Painting one frame of the Grow Tree animation")
+public class GrowthFrameEvent extends Event {
+
+	@Label("Levels")
+	@Description("How far the tree has grown, in levels")
+	float levels;
+
+	@Label("Detail Threshold")
+	@Description("The size in pixels below which parts of the tree are drawn as dots")
+	float threshold;
+
+	@Label("Over Budget")
+	boolean overBudget;
+
+	public GrowthFrameEvent(float levels, float threshold) {
+
+		this.levels = levels;
+		this.threshold = threshold;
+
+	}
+
+	public void setOverBudget(boolean overBudget) {
+		this.overBudget = overBudget;
+	}
+
+}
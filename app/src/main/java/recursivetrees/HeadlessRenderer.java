@@ -0,0 +1,572 @@
+package recursivetrees;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This class renders trees to PNG or SVG files without opening any windows, so
+ * trees can be made on servers without a screen. It takes the same settings as
+ * the GUI from the command line, and renders a number of trees with consecutive
+ * seeds in parallel on a pool of threads.
+ *
+ * So that many large trees cannot run the program out of memory, every tree
+ * has to reserve the memory for its geometry and image from a budget before it
+ * starts, and gives it back once its file is written.
+ *
+ * Trees can also be saved as geometry files (see GeometryFile), and a saved
+ * tree can be painted to a PNG again with --open without generating it.
+ *
+ * With --tile, every PNG is painted by a TiledRenderer instead: the image is
+ * cut into tiles that are painted on all of the threads and written to the
+ * file a strip at a time, so posters larger than the heap can be made. The
+ * trees are then rendered one after another, since each one already uses every
+ * thread. With --fit, each tree is scaled to fill the image, which is what a
+ * poster of a deep tree needs.
+ *
+ * Example:
+ *
+ * java -cp recursive-trees.jar recursivetrees.HeadlessRenderer --count 1000
+ * --segments 12 --leaves 3 --fruit red --out trees
+ *
+ * @author frankdesilets
+ *
+ */
+public class HeadlessRenderer {
+
+	private static final String HELP = "Renders trees to PNG or SVG files without a screen.";
+
+	private static final String USAGE = "Usage: HeadlessRenderer [options]\n"
+			+ "  --count N          how many trees to render (default 1)\n"
+			+ "  --seed N           seed of the first tree, the others count up from it (default random)\n"
+			+ "  --segments N       segments per tree (default 6)\n"
+			+ "  --split-angle N    branch split noise (default 20)\n"
+			+ "  --length-noise N   branch length noise (default 0)\n"
+			+ "  --angle N          angle of the trunk (default -90)\n"
+			+ "  --leaves N         leaves per branch end, 1 to 3 (default 1)\n"
+			+ "  --fruit COLOR      none, red or yellow (default none)\n"
+			+ "  --width N          image width (default 600)\n"
+			+ "  --height N         image height (default 600)\n"
+			+ "  --format FORMAT    png, svg or tree for a geometry file (default png)\n"
+			+ "  --open FILE        paint a saved geometry file to a PNG instead of generating trees\n"
+			+ "  --fit BOOL         scale each tree to fill the image, true or false (default false)\n"
+			+ "  --tile N           paint PNGs in N x N tiles on all threads and write them a strip at a time (default off)\n"
+			+ "  --threads N        render threads (default one per processor)\n"
+			+ "  --memory-mb N      memory budget for trees being rendered (default half the heap)\n"
+			+ "  --out DIR          directory the files are written to (default .)";
+
+	private final Tree tree;
+	private final int count;
+	private final int width;
+	private final int height;
+	private final String format;
+	private final File savedTree;
+	private final boolean fit;
+	private final int tileSize; // 0 to paint every PNG into one image
+	private final int threads;
+	private final long memoryBudget;
+	private final File outputDirectory;
+
+	/*
+	 * The memory budget is handed out in kilobytes, so that it fits in the int
+	 * permits of a Semaphore.
+	 */
+	private final Semaphore memory;
+	private final int memoryPermits;
+
+	public HeadlessRenderer(Tree tree, int count, int width, int height, String format, File savedTree, boolean fit,
+			int tileSize, int threads, long memoryBudget, File outputDirectory) {
+
+		this.tree = tree;
+		this.count = count;
+		this.width = width;
+		this.height = height;
+		this.format = format;
+		this.savedTree = savedTree;
+		this.fit = fit;
+		this.tileSize = tileSize;
+		this.threads = threads;
+		this.memoryBudget = memoryBudget;
+		this.outputDirectory = outputDirectory;
+		this.memoryPermits = (int) Math.max(Math.min(memoryBudget / 1024, Integer.MAX_VALUE), 1);
+		this.memory = new Semaphore(memoryPermits);
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * This has to be set before any AWT class is used.
+		 */
+		System.setProperty("java.awt.headless", "true");
+
+		if (HeadlessRenderer.wantsHelp(args)) {
+			System.out.println(HELP);
+			System.out.println(USAGE);
+			System.exit(0);
+			return;
+		}
+
+		HeadlessRenderer renderer;
+		try {
+			renderer = HeadlessRenderer.fromArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+
+		try {
+			long start = System.nanoTime();
+			renderer.renderAll();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("Rendered %d trees in %.1f s (%.0f per minute)%n", renderer.count, seconds,
+					renderer.count / seconds * 60);
+		} catch (IOException e) {
+			System.err.println("Could not write a tree: " + e.getMessage());
+			System.exit(1);
+		} catch (IllegalStateException e) {
+			System.err.println("Could not render a tree: " + e.getMessage()
+					+ (e.getCause() == null ? "" : " (" + e.getCause() + ")"));
+			System.exit(1);
+		}
+
+	}
+
+	/**
+	 *
+	 * Returns true if the command line arguments ask for help, with --help in
+	 * the place of an option.
+	 *
+	 * @param args
+	 * @return
+	 */
+	public static boolean wantsHelp(String[] args) {
+
+		for (int i = 0; i < args.length; i += 2) {
+			if (args[i].equals("--help")) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	/**
+	 *
+	 * Creates a HeadlessRenderer from command line arguments. Throws an
+	 * IllegalArgumentException with a message for the user if an argument is not
+	 * valid.
+	 *
+	 * @param args
+	 * @return
+	 */
+	public static HeadlessRenderer fromArguments(String[] args) {
+
+		Tree tree = new Tree();
+		int count = 1;
+		int width = 600;
+		int height = 600;
+		String format = "png";
+		File savedTree = null;
+		boolean fit = false;
+		int tileSize = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+		File outputDirectory = new File(".");
+
+		for (int i = 0; i < args.length; i++) {
+
+			String option = args[i];
+			if (option.equals("--help")) {
+				throw new IllegalArgumentException(HELP);
+			}
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + option);
+			}
+			String value = args[++i];
+
+			switch (option) {
+			case "--count":
+				count = HeadlessRenderer.parsePositive(option, value);
+				break;
+			case "--seed":
+				tree.setSeed(HeadlessRenderer.parseLong(option, value));
+				break;
+			case "--segments":
+				int segments = HeadlessRenderer.parsePositive(option, value);
+				if (segments > SegmentBuffer.MAX_LEVELS) {
+					throw new IllegalArgumentException("--segments can be at most " + SegmentBuffer.MAX_LEVELS);
+				}
+				tree.setMaxSegments(segments);
+				break;
+			case "--split-angle":
+				tree.setSplitAngle(HeadlessRenderer.parseInt(option, value));
+				break;
+			case "--length-noise":
+				tree.setUpperBranchLengthForCalculation(HeadlessRenderer.parseInt(option, value));
+				break;
+			case "--angle":
+				tree.setTheta(HeadlessRenderer.parseInt(option, value));
+				break;
+			case "--leaves":
+				int leafParts = HeadlessRenderer.parseInt(option, value);
+				if (leafParts < 1 || leafParts > 3) {
+					throw new IllegalArgumentException("--leaves must be 1, 2 or 3");
+				}
+				tree.setLeafParts(leafParts);
+				break;
+			case "--fruit":
+				if (value.equals("none")) {
+					tree.setShowFruit(false);
+				} else if (value.equals("red")) {
+					tree.setShowFruit(true);
+					tree.setFruitColor(tree.redFruitColor());
+				} else if (value.equals("yellow")) {
+					tree.setShowFruit(true);
+					tree.setFruitColor(tree.yellowFruitColor());
+				} else {
+					throw new IllegalArgumentException("--fruit must be none, red or yellow");
+				}
+				break;
+			case "--width":
+				width = HeadlessRenderer.parsePositive(option, value);
+				break;
+			case "--height":
+				height = HeadlessRenderer.parsePositive(option, value);
+				break;
+			case "--format":
+				if (!value.equals("png") && !value.equals("svg") && !value.equals("tree")) {
+					throw new IllegalArgumentException("--format must be png, svg or tree");
+				}
+				format = value;
+				break;
+			case "--open":
+				savedTree = new File(value);
+				break;
+			case "--fit":
+				if (!value.equals("true") && !value.equals("false")) {
+					throw new IllegalArgumentException("--fit must be true or false");
+				}
+				fit = value.equals("true");
+				break;
+			case "--tile":
+				tileSize = HeadlessRenderer.parsePositive(option, value);
+				break;
+			case "--threads":
+				threads = HeadlessRenderer.parsePositive(option, value);
+				break;
+			case "--memory-mb":
+				memoryBudget = HeadlessRenderer.parsePositive(option, value) * 1024L * 1024L;
+				break;
+			case "--out":
+				outputDirectory = new File(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + option);
+			}
+
+		}
+
+		return new HeadlessRenderer(tree, count, width, height, format, savedTree, fit, tileSize, threads, memoryBudget,
+				outputDirectory);
+
+	}
+
+	/**
+	 *
+	 * Renders all of the trees and waits until every file has been written. The
+	 * trees use the seed of the Tree and the seeds following it.
+	 *
+	 * @throws IOException
+	 */
+	public void renderAll() throws IOException {
+
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			throw new IOException("Could not create " + outputDirectory);
+		}
+
+		if (savedTree != null) {
+			this.paintSaved();
+			return;
+		}
+
+		/*
+		 * Tiled trees use every thread for their tiles, so they are rendered one at a
+		 * time.
+		 */
+		ExecutorService executor = Executors.newFixedThreadPool(tileSize > 0 ? 1 : threads);
+		try {
+
+			List<Future<?>> jobs = new ArrayList<Future<?>>();
+			for (int i = 0; i < count; i++) {
+
+				Tree settings = new Tree(tree);
+				settings.setSeed(tree.getSeed() + i);
+				jobs.add(executor.submit(new RenderJob(settings)));
+
+			}
+
+			for (Future<?> job : jobs) {
+				try {
+					job.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IllegalStateException("A tree could not be rendered.", e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while rendering trees.", e);
+				}
+			}
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that paints the saved geometry file to a PNG
+	 * with the same name. The geometry is mapped from the file, not generated.
+	 *
+	 * @throws IOException
+	 */
+	private void paintSaved() throws IOException {
+
+		TreeGeometry geometry = GeometryFile.load(savedTree.toPath()).getGeometry();
+		String name = savedTree.getName().replaceFirst("\\.tree$", "") + ".png";
+		this.writePng(geometry, new File(outputDirectory, name));
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that paints a tree into a new image and
+	 * writes it to a PNG file, or paints it in tiles with a TiledRenderer. Either
+	 * way the tree is painted through a LevelOfDetail, which skips the parts of
+	 * the tree that grow outside the image.
+	 *
+	 * @param geometry
+	 * @param file
+	 * @throws IOException
+	 */
+	private void writePng(TreeGeometry geometry, File file) throws IOException {
+
+		if (tileSize > 0) {
+			TiledRenderer renderer = new TiledRenderer(geometry, width, height, tileSize);
+			renderer.setThreads(threads);
+			if (fit) {
+				renderer.setView(HeadlessRenderer.fitView(renderer.getTreeBounds(), width, height));
+			}
+			renderer.write(file.toPath());
+			return;
+		}
+
+		LevelOfDetail detail = new LevelOfDetail(geometry);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = image.createGraphics();
+		g2.setClip(0, 0, width, height);
+		if (fit) {
+			g2.transform(HeadlessRenderer.fitView(detail.getSubtreeBounds(0), width, height));
+		}
+		detail.paint(g2);
+		g2.dispose();
+		ImageIO.write(image, "png", file);
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns the transform that scales the
+	 * box of a tree, grown by how far its leaves reach, to fill an image of the
+	 * given size, and centers it.
+	 *
+	 * @param bounds
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	private static AffineTransform fitView(Rectangle2D.Float bounds, int width, int height) {
+
+		double reach = SpatialIndex.LEAF_REACH;
+		double boxWidth = bounds.width + 2 * reach;
+		double boxHeight = bounds.height + 2 * reach;
+		double scale = Math.min(width / boxWidth, height / boxHeight);
+
+		AffineTransform view = new AffineTransform();
+		view.translate((width - boxWidth * scale) / 2, (height - boxHeight * scale) / 2);
+		view.scale(scale, scale);
+		view.translate(reach - bounds.x, reach - bounds.y);
+		return view;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns how many kilobytes of the
+	 * memory budget a tree needs: its geometry, plus its image and the bounding
+	 * boxes used to paint it if it has one, or two strips of tiles instead of the
+	 * image if it is painted in tiles. A tree that needs more than the whole
+	 * budget takes all of it, so it still runs, but on its own. An SVG is
+	 * streamed to its file without keeping the tree, so it needs almost nothing.
+	 *
+	 * @param settings
+	 * @return
+	 */
+	private int permitsFor(Tree settings) {
+
+		if (format.equals("svg")) {
+			return 1;
+		}
+
+		long bytes = TreeGenerator.estimateBytes(settings);
+		int branchCount = SegmentBuffer.branchCount(settings.getMaxSegments());
+		if (format.equals("png") && tileSize > 0) {
+			bytes += TiledRenderer.estimateBytes(width, tileSize, branchCount);
+		} else if (format.equals("png")) {
+			bytes += 4L * width * height + 16L * branchCount;
+		}
+		return (int) Math.min(bytes / 1024 + 1, memoryPermits);
+
+	}
+
+	/**
+	 *
+	 * Renders one tree and writes it to a PNG, SVG or geometry file named after
+	 * its seed.
+	 *
+	 */
+	private class RenderJob implements Callable<Void> {
+
+		private final Tree settings;
+
+		RenderJob(Tree settings) {
+			this.settings = settings;
+		}
+
+		@Override
+		public Void call() throws IOException, InterruptedException {
+
+			int permits = HeadlessRenderer.this.permitsFor(settings);
+			memory.acquire(permits);
+			try {
+
+				/*
+				 * The tree is planted at the same place relative to the image as on the
+				 * canvas.
+				 */
+				int x = width * TreeCanvas.PLANT_X / 600;
+				int y = height * TreeCanvas.PLANT_Y / 600;
+				if (format.equals("svg")) {
+					File file = new File(outputDirectory, "tree-" + settings.getSeed() + ".svg");
+					new SvgExporter(settings, x, y, width, height).write(file.toPath());
+					return null;
+				}
+
+				/*
+				 * The trees are already rendered in parallel, so each one is generated on
+				 * its own thread, unless they are tiled and rendered one at a time.
+				 */
+				TreeGenerator generator = new TreeGenerator(settings);
+				if (tileSize == 0) {
+					generator.setParallelDepth(0);
+				}
+				TreeGeometry geometry = generator.generate(x, y);
+
+				File file = new File(outputDirectory, "tree-" + settings.getSeed() + "." + format);
+				if (format.equals("tree")) {
+					GeometryFile.write(file.toPath(), settings, geometry);
+				} else {
+					HeadlessRenderer.this.writePng(geometry, file);
+				}
+				return null;
+
+			} finally {
+				memory.release(permits);
+			}
+
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that reads an int option.
+	 *
+	 * @param option
+	 * @param value
+	 * @return
+	 */
+	private static int parseInt(String option, String value) {
+
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(option + " must be a whole number, not " + value);
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that reads an int option that must be above
+	 * zero.
+	 *
+	 * @param option
+	 * @param value
+	 * @return
+	 */
+	private static int parsePositive(String option, String value) {
+
+		int number = HeadlessRenderer.parseInt(option, value);
+		if (number <= 0) {
+			throw new IllegalArgumentException(option + " must be above zero");
+		}
+		return number;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that reads a long option.
+	 *
+	 * @param option
+	 * @param value
+	 * @return
+	 */
+	private static long parseLong(String option, String value) {
+
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(option + " must be a whole number, not " + value);
+		}
+
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+}
@@ -0,0 +1,46 @@
+package recursivetrees;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This is the Java Flight Recorder event for drawing one layer of a tree into
+ * its image on the render thread of a RenderScheduler (see TreeFrame). A forest
+ * is drawn in one pass, which is recorded as the layer "forest". Layers kept
+ * from the frame before are not drawn again, and so are not recorded.
+ *
+ * @author frankdesilets
+ *
+ */
+@Name("recursivetrees.LayerRaster")
+@Label("Layer Raster")
+@Category("Recursive Trees")
+@Description("Drawing one layer of a tree into an image")
+public class LayerRasterEvent extends Event {
+
+	@Label("Layer")
+	String layer;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Shapes")
+	@Description("How many branches, leaves or fruit the layer holds, drawn or not, or the branches of a forest")
+	long shapes;
+
+	public LayerRasterEvent(String layer, int width, int height, long shapes) {
+
+		this.layer = layer;
+		this.width = width;
+		this.height = height;
+		this.shapes = shapes;
+
+	}
+
+}
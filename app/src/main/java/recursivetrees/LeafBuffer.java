@@ -0,0 +1,195 @@
+package recursivetrees;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * This class stores leaf or fruit ovals of a generated Tree as parallel
+ * primitive arrays. Oval i is drawn at x[i], y[i], rotated by rotation[i], in
+ * color number color[i] of the palette of the TreeGeometry it belongs to.
+ * 
+ * Like the SegmentBuffer, it is sized up front, here from the amount of branch
+ * ends that can carry leaves. Its values are held in FloatBuffers and an
+ * IntBuffer for the same reason, so a loaded tree can be read straight from a
+ * memory-mapped file.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class LeafBuffer {
+
+	/*
+	 * Three floats and an int.
+	 */
+	public static final int BYTES_PER_OVAL = 16;
+
+	private final FloatBuffer x;
+	private final FloatBuffer y;
+	private final FloatBuffer rotation;
+	private final IntBuffer color;
+	private int size;
+
+	public LeafBuffer(int capacity) {
+
+		this.x = FloatBuffer.wrap(new float[capacity]);
+		this.y = FloatBuffer.wrap(new float[capacity]);
+		this.rotation = FloatBuffer.wrap(new float[capacity]);
+		this.color = IntBuffer.wrap(new int[capacity]);
+
+	}
+
+	/**
+	 * 
+	 * Creates a buffer around values that already exist, such as the views of a
+	 * loaded file. The buffer is full.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param rotation
+	 * @param color
+	 */
+	LeafBuffer(FloatBuffer x, FloatBuffer y, FloatBuffer rotation, IntBuffer color) {
+
+		this.x = x;
+		this.y = y;
+		this.rotation = rotation;
+		this.color = color;
+		this.size = x.capacity();
+
+	}
+
+	/**
+	 * 
+	 * Creates a second buffer around the same values as another one, with the
+	 * same size, like the SegmentBuffer of a growing tree.
+	 * 
+	 * @param other
+	 */
+	LeafBuffer(LeafBuffer other) {
+
+		this.x = other.x;
+		this.y = other.y;
+		this.rotation = other.rotation;
+		this.color = other.color;
+		this.size = other.size;
+
+	}
+
+	/**
+	 * 
+	 * Returns how many branches of a tree with the given amount of levels end
+	 * before there are fewer than leavesAppear segments remaining, which are the
+	 * branches that leaves and fruit are placed on.
+	 * 
+	 * @param maxSegments
+	 * @param leavesAppear
+	 * @return
+	 */
+	public static int leafBranchCount(int maxSegments, int leavesAppear) {
+
+		int count = 0;
+		for (int segsRemaining = 1; segsRemaining < leavesAppear && segsRemaining <= maxSegments; segsRemaining++) {
+			count += 1 << (maxSegments - segsRemaining);
+		}
+		return count;
+
+	}
+
+	/**
+	 * 
+	 * Stores an oval at the given index.
+	 * 
+	 * @param i
+	 * @param x
+	 * @param y
+	 * @param rotation
+	 * @param color
+	 */
+	void set(int i, float x, float y, float rotation, int color) {
+
+		this.x.put(i, x);
+		this.y.put(i, y);
+		this.rotation.put(i, rotation);
+		this.color.put(i, color);
+
+	}
+
+	/**
+	 * 
+	 * Sets how many of the ovals, counted from index 0, have been stored.
+	 * 
+	 * @param size
+	 */
+	void setSize(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * 
+	 * Moves the ovals that are marked to keep to the front of the buffer, in the
+	 * same order, and drops the rest. This is used for fruit, which is only placed
+	 * on some branch ends.
+	 * 
+	 * @param keep
+	 */
+	void compact(boolean[] keep) {
+		this.compact(keep, 0, 0);
+	}
+
+	/**
+	 * 
+	 * Like compact(), but leaves the first kept ovals where they are and only
+	 * looks at the marks from index from on, which must not be less than kept.
+	 * 
+	 * @param keep
+	 * @param from
+	 * @param kept
+	 */
+	void compact(boolean[] keep, int from, int kept) {
+
+		for (int i = from; i < keep.length; i++) {
+			if (keep[i]) {
+				this.set(kept++, x.get(i), y.get(i), rotation.get(i), color.get(i));
+			}
+		}
+		this.size = kept;
+
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return x.capacity();
+	}
+
+	public float x(int i) {
+		return x.get(i);
+	}
+
+	public float y(int i) {
+		return y.get(i);
+	}
+
+	public float rotation(int i) {
+		return rotation.get(i);
+	}
+
+	public int color(int i) {
+		return color.get(i);
+	}
+
+	/**
+	 * 
+	 * Returns the buffers of values in the order GeometryFile stores them: x, y,
+	 * rotation and color.
+	 * 
+	 * @return
+	 */
+	Buffer[] columns() {
+		return new Buffer[] { x, y, rotation, color };
+	}
+
+}
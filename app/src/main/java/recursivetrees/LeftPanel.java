@@ -1,3 +1,5 @@
+package recursivetrees;
+
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -16,14 +18,23 @@ import javax.swing.event.DocumentListener;
 /**
  * 
  * The purpose of this class is to provide a panel for the options menu of the
- * GUI. Many nested panels are used.
+ * GUI. Many nested panels are used. Every change to a setting asks the
+ * TreeCanvas to refresh, so the new tree is shown as soon as it is ready.
  * 
  * @author frankdesilets
  *
  */
 public class LeftPanel extends JPanel implements ActionListener, ChangeListener, DocumentListener {
 
+	/*
+	 * The most segments the user can ever choose. A tree with 26 segments has
+	 * about 67 million branches, which is around 1.6 GB of geometry, so on most
+	 * heaps the spinner stops earlier (see maxSegments()).
+	 */
+	public static final int MAX_SEGMENTS = 26;
+
 	private JTextField textField; // text field used by anglePanel
+	private JTextField seedField; // text field used by seedPanel
 	private JCheckBox checkBox;
 	private JSlider branchLengthNoiseSlider;
 	private JSlider branchSplitNoiseSlider;
@@ -38,10 +49,12 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 	private JComboBox comboBoxColor;
 	private JSpinner comboBoxSegments;
 	private Tree tree;
+	private TreeCanvas treeCanvas;
 
 	public LeftPanel(Tree tree, TreeCanvas treeCanvas) {
 
 		this.tree = tree;
+		this.treeCanvas = treeCanvas;
 
 		/*
 		 * This class, LeftPanel, is set to have a BorderLayout. Two new JPanels are
@@ -62,10 +75,11 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 		 * It is given a title border and two new JPanels are created, each with a
 		 * FlowLayout, to host the segments and angle options, respectively.
 		 */
-		JPanel segmentsAnglePanel = new JPanel(new GridLayout(1, 2));
-		segmentsAnglePanel.setBorder(BorderFactory.createTitledBorder("Segments and Angle"));
+		JPanel segmentsAnglePanel = new JPanel(new GridLayout(1, 3));
+		segmentsAnglePanel.setBorder(BorderFactory.createTitledBorder("Segments, Angle and Seed"));
 		JPanel segmentsPanel = new JPanel();
 		JPanel anglePanel = new JPanel();
+		JPanel seedPanel = new JPanel();
 
 		/*
 		 * A title JLabel is created to preface the editable object in the segments
@@ -74,12 +88,14 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 		JLabel segments = new JLabel("Segments:");
 		segmentsPanel.add(segments);
 		/*
-		 * A new JSpinner is created and given an initial value of 6. The size is set
+		 * A new JSpinner is created and given an initial value of 6. Since the tree is
+		 * generated without recursion, the only limit on segments is memory, so the
+		 * spinner goes up to the most segments that fit in the heap. The size is set
 		 * via a handle on it's Editor.
 		 */
-		this.comboBoxSegments = new JSpinner();
 		Integer initialValue = 6;
-		comboBoxSegments.setValue(initialValue);
+		int maxValue = Math.max(LeftPanel.maxSegments(), initialValue.intValue());
+		this.comboBoxSegments = new JSpinner(new SpinnerNumberModel(initialValue.intValue(), 1, maxValue, 1));
 		JComponent editor = comboBoxSegments.getEditor();
 		Dimension dimension = editor.getPreferredSize();
 		editor.setPreferredSize(new Dimension(40, (int) dimension.getHeight()));
@@ -108,6 +124,19 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 		anglePanel.add(textField);
 		segmentsAnglePanel.add(segmentsPanel);
 		segmentsAnglePanel.add(anglePanel);
+
+		/*
+		 * A title JLabel and a JTextField are created for the seed, which starts with
+		 * the seed of the Tree. The same seed and settings always give the same tree,
+		 * so a seed can be written down and entered again later. The seed is applied
+		 * when the Refresh button is pressed.
+		 */
+		JLabel seed = new JLabel("Seed:");
+		this.seedField = new JTextField(8);
+		seedField.setText(String.valueOf(tree.getSeed()));
+		seedPanel.add(seed);
+		seedPanel.add(seedField);
+		segmentsAnglePanel.add(seedPanel);
 		optionsPanel.add(segmentsAnglePanel);
 
 		/*
@@ -322,6 +351,7 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 				} else if (colorString.equals("Yellow")) {
 					LeftPanel.this.tree.setFruitColor(LeftPanel.this.tree.yellowFruitColor());
 				}
+				LeftPanel.this.treeCanvas.refresh();
 
 			}
 
@@ -336,6 +366,32 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 
 	}
 
+	/**
+	 * Returns the most segments, up to MAX_SEGMENTS, that a tree with three leaf
+	 * parts can have and still fit, with the layers of a canvas of its preferred
+	 * size, in the memory the RenderScheduler allows a frame.
+	 * 
+	 * @return
+	 */
+	public static int maxSegments() {
+
+		Tree largest = new Tree();
+		largest.setLeafParts(3);
+		long budget = RenderScheduler.memoryBudget();
+		int segments = 1;
+		while (segments < MAX_SEGMENTS) {
+
+			largest.setMaxSegments(segments + 1);
+			if (RenderScheduler.estimateBytes(largest, 600, 600) > budget) {
+				break;
+			}
+			segments++;
+
+		}
+		return segments;
+
+	}
+
 	/**
 	 * This is a private helper method that the anonymous ChangeListener added to
 	 * the branch length noise JSlider calls. It sets the text in the corresponding
@@ -346,6 +402,7 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 	private void branchLengthNoiseSliderChanged(int value) {
 		this.branchLengthNoiseLabel1.setText("Current Noise: " + value);
 		tree.setUpperBranchLengthForCalculation(value);
+		treeCanvas.refresh();
 
 	}
 
@@ -359,6 +416,7 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 	private void branchSplitNoiseSliderChanged(int value) {
 		this.branchSplitNoiseLabel2.setText("Current Noise: " + value);
 		tree.setSplitAngle(value);
+		treeCanvas.refresh();
 
 	}
 
@@ -370,6 +428,7 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 	 */
 	private void segmentSpinnerChanged(int value) {
 		tree.setMaxSegments(value);
+		treeCanvas.refresh();
 
 	}
 
@@ -383,6 +442,7 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 	private void leafButton(int parts) {
 
 		tree.setLeafParts(parts);
+		treeCanvas.refresh();
 
 	}
 
@@ -400,6 +460,7 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 		} else {
 			this.tree.setShowFruit(false);
 		}
+		treeCanvas.refresh();
 
 	}
 
@@ -433,8 +494,35 @@ public class LeftPanel extends JPanel implements ActionListener, ChangeListener,
 
 	}
 
+	/**
+	 * This method is called when the Refresh button is pressed. If the user has
+	 * typed a different seed, the Tree is given that seed so the tree it belongs
+	 * to is shown again. Otherwise a new random seed is picked, giving a new tree,
+	 * and it is shown in the seed text field.
+	 */
+	public void applySeed() {
+
+		long seed;
+		try {
+			seed = Long.parseLong(seedField.getText().trim());
+		} catch (NumberFormatException e) {
+			seed = tree.getSeed(); // anything that is not a number asks for a new seed
+		}
+
+		if (seed == tree.getSeed()) {
+			seed = Tree.newSeed();
+		}
+		tree.setSeed(seed);
+		seedField.setText(String.valueOf(seed));
+
+	}
+
 	public JTextField getTextField() {
 		return textField;
 	}
 
+	public JTextField getSeedField() {
+		return seedField;
+	}
+
 }
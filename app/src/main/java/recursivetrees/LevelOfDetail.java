@@ -0,0 +1,553 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * This class paints a TreeGeometry with less detail where the detail could not
+ * be seen anyway. For every branch it keeps the bounding box of the branch and
+ * everything growing from it. When painting, the tree is walked from the trunk
+ * up, and a branch whose bounding box is smaller than a few pixels at the
+ * current zoom is drawn as a single dot in the average leaf color instead of
+ * as all of its branches and leaves. Branches whose bounding box is outside the
+ * clip are skipped along with everything growing from them. The cost of
+ * painting therefore depends on how much of the tree is visible on the screen,
+ * not on how many branches it has.
+ *
+ * The bounding boxes are worked out once, from the last branch back to the
+ * trunk. Because the branches are stored like a heap, the two branches growing
+ * from branch i are done before it, so every box is the box of its own segment
+ * joined with the boxes of its two children.
+ *
+ * Zoomed far out, many collapsed branches, and branches and leaves that are
+ * smaller than the threshold themselves, fall on the same pixel. Only the first
+ * of them is drawn on each pixel, so there are never many more dots than there
+ * are pixels.
+ *
+ * Leaves and fruit are drawn after the branches and batched by color, like
+ * TreeGeometry.paint() does, so when nothing is collapsed the result looks the
+ * same.
+ *
+ * The tree can also be painted part of the way grown, for the GrowthAnimator:
+ * only the first levels are drawn, and the branches of the level that is
+ * growing are drawn as long as they have grown so far.
+ *
+ * The branches, leaves and fruit can also be painted on their own, as layers,
+ * so that each can be kept in an image of its own and only painted again when
+ * its part of the tree changes. Painting the three layers one over the other
+ * gives the same picture as painting the whole tree at once, except where see
+ * through leaves overlap: blended in a layer of their own first, a channel of
+ * such a pixel can come out one step different.
+ *
+ * The painter reuses its working arrays, so it must only paint from one thread
+ * at a time.
+ *
+ * Branches, leaves and fruit are not drawn one at a time but collected into a
+ * ShapeBatch, one path for every stroke width and color, so the state of the
+ * Graphics2D only changes a few times per paint.
+ *
+ * @author frankdesilets
+ *
+ */
+public class LevelOfDetail {
+
+	/*
+	 * Branches growing into less than this many pixels across are drawn as a dot.
+	 */
+	public static final float DEFAULT_THRESHOLD = 3;
+
+	/*
+	 * The layers of the tree, which can be painted together or on their own.
+	 */
+	public static final int BRANCHES = 1;
+	public static final int LEAVES = 2;
+	public static final int FRUIT = 4;
+	public static final int ALL_LAYERS = BRANCHES | LEAVES | FRUIT;
+
+	private final TreeGeometry geometry;
+	private final float[] minX;
+	private final float[] minY;
+	private final float[] maxX;
+	private final float[] maxY;
+
+	/*
+	 * Working arrays reused by paint(): the stack of branches still to look at,
+	 * and one bit for every leaf-carrying branch that was drawn.
+	 */
+	private final int[] stack;
+	private final long[] drawnLeafBranches;
+
+	/*
+	 * The branches, leaves and fruit are drawn through a ShapeBatch, and the dots
+	 * of collapsed branches are filled from a palette of just the dot color.
+	 */
+	private final ShapeBatch batch = new ShapeBatch();
+	private final Color[] dotPalette;
+
+	/*
+	 * The pixels of the clip that a dot has been drawn on, so that many tiny
+	 * branches falling on the same pixel only draw it once.
+	 */
+	private final PixelMask pixels = new PixelMask();
+
+	/*
+	 * How many fruit grow on the branches above each level, worked out the first
+	 * time the tree is painted part of the way grown.
+	 */
+	private int[] fruitAbove;
+
+	/**
+	 *
+	 * Works out the bounding boxes for a tree. This is done on the render thread,
+	 * along with generating it.
+	 *
+	 * @param geometry
+	 */
+	public LevelOfDetail(TreeGeometry geometry) {
+
+		this(geometry, null);
+
+	}
+
+	/**
+	 *
+	 * Works out the bounding boxes for a tree, sharing them with the LevelOfDetail
+	 * of an earlier tree if both trees have the same branch buffer, since the
+	 * boxes only depend on the branches. If they do not, or earlier is null, the
+	 * boxes are worked out again.
+	 *
+	 * @param geometry
+	 * @param earlier
+	 */
+	public LevelOfDetail(TreeGeometry geometry, LevelOfDetail earlier) {
+
+		this.geometry = geometry;
+		SegmentBuffer branches = geometry.getBranches();
+		int size = branches.size();
+
+		if (earlier != null && earlier.geometry.getBranches() == branches) {
+			this.minX = earlier.minX;
+			this.minY = earlier.minY;
+			this.maxX = earlier.maxX;
+			this.maxY = earlier.maxY;
+		} else {
+			this.minX = new float[size];
+			this.minY = new float[size];
+			this.maxX = new float[size];
+			this.maxY = new float[size];
+			LevelOfDetail.findBounds(branches, minX, minY, maxX, maxY);
+		}
+
+		/*
+		 * Every branch that is collapsed ends in leaves, so it is drawn in the
+		 * average color of the leaf palette. A tree without leaves uses the branch
+		 * color.
+		 */
+		this.dotPalette = new Color[] {
+				LevelOfDetail.averageColor(geometry.getLeafPalette(), geometry.getBranchColor()) };
+
+		/*
+		 * The stack never holds more than one waiting branch for every level, plus the
+		 * two children of the branch being looked at.
+		 */
+		this.stack = new int[SegmentBuffer.MAX_LEVELS + 2];
+		this.drawnLeafBranches = new long[(Math.max(size - geometry.getFirstLeafBranch(), 0) + 63) >>> 6];
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that works out the box of every branch and
+	 * everything growing from it, from the last branch back to the trunk.
+	 *
+	 * @param branches
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	private static void findBounds(SegmentBuffer branches, float[] minX, float[] minY, float[] maxX, float[] maxY) {
+
+		int size = branches.size();
+		for (int i = size - 1; i >= 0; i--) {
+
+			minX[i] = Math.min(branches.x1(i), branches.x2(i));
+			minY[i] = Math.min(branches.y1(i), branches.y2(i));
+			maxX[i] = Math.max(branches.x1(i), branches.x2(i));
+			maxY[i] = Math.max(branches.y1(i), branches.y2(i));
+
+			for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+				minX[i] = Math.min(minX[i], minX[child]);
+				minY[i] = Math.min(minY[i], minY[child]);
+				maxX[i] = Math.max(maxX[i], maxX[child]);
+				maxY[i] = Math.max(maxY[i], maxY[child]);
+			}
+
+		}
+
+	}
+
+	/**
+	 *
+	 * Paints the tree with DEFAULT_THRESHOLD.
+	 *
+	 * @param g
+	 */
+	public void paint(Graphics g) {
+
+		this.paint(g, DEFAULT_THRESHOLD);
+
+	}
+
+	/**
+	 *
+	 * Paints the tree, drawing every branch that grows into less than threshold
+	 * pixels as a dot. The size of a pixel comes from the transform of g, and only
+	 * the parts inside the clip of g are drawn.
+	 *
+	 * @param g
+	 * @param threshold
+	 */
+	public void paint(Graphics g, float threshold) {
+
+		this.paint(g, threshold, Float.POSITIVE_INFINITY);
+
+	}
+
+	/**
+	 *
+	 * Paints the tree as far as it has grown when levels levels have grown. The
+	 * branches on levels below that are drawn in full with their leaves and fruit,
+	 * and the branches on the level that is growing are drawn as a part of their
+	 * length, with no leaves or fruit yet. So 2.5 draws the trunk and the level
+	 * above it, and the next branches half as long as they will be.
+	 *
+	 * @param g
+	 * @param threshold
+	 * @param levels
+	 */
+	public void paint(Graphics g, float threshold, float levels) {
+
+		this.paint(g, threshold, levels, ALL_LAYERS);
+
+	}
+
+	/**
+	 *
+	 * Paints the given layers of the tree as far as it has grown, for example
+	 * LEAVES | FRUIT. The branches are still walked when only the leaves are
+	 * painted, since leaves are only drawn on branches that are drawn in full.
+	 *
+	 * @param g
+	 * @param threshold
+	 * @param levels
+	 * @param layers
+	 */
+	public void paint(Graphics g, float threshold, float levels, int layers) {
+
+		Graphics2D g2 = (Graphics2D) g;
+		AffineTransform xf = g2.getTransform();
+		Rectangle clip = g2.getClipBounds();
+		SegmentBuffer branches = geometry.getBranches();
+
+		/*
+		 * The scale of the transform tells how many pixels one unit of the tree takes
+		 * up, and from that how small a branch has to be in units of the tree to be
+		 * collapsed.
+		 */
+		double scale = Math.sqrt(Math.abs(xf.getDeterminant()));
+		float pixel = (float) (1 / Math.max(scale, 1e-9));
+		float limit = threshold * pixel;
+		pixels.start(xf, clip);
+
+		/*
+		 * The branches are walked with a stack, starting at the trunk.
+		 */
+		Arrays.fill(drawnLeafBranches, 0);
+		int firstLeafBranch = geometry.getFirstLeafBranch();
+		batch.resetCounts();
+		batch.start(g2, geometry.getBranchColor(), dotPalette);
+		boolean drawBranches = (layers & BRANCHES) != 0;
+		int top = 0;
+		if (branches.size() > 0 && (layers & (BRANCHES | LEAVES)) != 0) {
+			stack[top++] = 0;
+		}
+
+		while (top > 0) {
+
+			int i = stack[--top];
+			if (levels <= branches.depth(i)) {
+				continue; // the branch has not started growing yet
+			}
+
+			/*
+			 * A branch outside the clip is skipped along with all of its children. The
+			 * box is grown by how far the stroke and the leaves can reach.
+			 */
+			float reach = branches.stroke(i) / 2f + SpatialIndex.LEAF_REACH;
+			if (clip != null && (maxX[i] + reach < clip.x || minX[i] - reach > clip.x + clip.width
+					|| maxY[i] + reach < clip.y || minY[i] - reach > clip.y + clip.height)) {
+				continue;
+			}
+
+			/*
+			 * A branch that grows into less than the limit is drawn as one dot covering
+			 * its box, unless a dot has already been drawn on that pixel.
+			 */
+			float width = maxX[i] - minX[i];
+			float height = maxY[i] - minY[i];
+			if (Math.max(width, height) < limit) {
+
+				if (drawBranches && pixels.claim(xf, minX[i] + width / 2, minY[i] + height / 2)) {
+					batch.rect(0, minX[i], minY[i], Math.max(width, pixel), Math.max(height, pixel));
+				}
+				continue;
+
+			}
+
+			/*
+			 * The branch itself is drawn, but only once per pixel when it is shorter than
+			 * the limit. A stroke thinner than a pixel is drawn as a thin line, which is
+			 * much faster to draw than a wide one.
+			 */
+			float x1 = branches.x1(i);
+			float y1 = branches.y1(i);
+			float x2 = branches.x2(i);
+			float y2 = branches.y2(i);
+			float grown = levels - branches.depth(i); // how much of the branch has grown, 1 or more is all of it
+			if (grown < 1) {
+				x2 = x1 + (x2 - x1) * grown;
+				y2 = y1 + (y2 - y1) * grown;
+			}
+			boolean tiny = Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1)) < limit;
+			if (drawBranches && (!tiny || pixels.claim(xf, (x1 + x2) / 2, (y1 + y2) / 2))) {
+				int stroke = branches.stroke(i) * scale < 1 ? 0 : branches.stroke(i);
+				batch.line(stroke, x1, y1, x2, y2);
+			}
+
+			if (i >= firstLeafBranch && grown >= 1) {
+				int bit = i - firstLeafBranch;
+				drawnLeafBranches[bit >>> 6] |= 1L << bit;
+			}
+			if (2 * i + 2 < branches.size() && grown > 1) {
+				stack[top++] = 2 * i + 2;
+				stack[top++] = 2 * i + 1;
+			}
+
+		}
+		batch.finish();
+
+		/*
+		 * The leaves go on top of the branches, so they get their own pixels.
+		 */
+		if ((layers & LEAVES) != 0) {
+			pixels.start(xf, clip);
+			batch.start(g2, null, geometry.getLeafPalette());
+			this.paintLeaves(xf, pixel, limit);
+			batch.finish();
+		}
+		if ((layers & FRUIT) != 0) {
+			batch.start(g2, null, geometry.getFruitPalette());
+			this.paintFruit(clip, limit, this.fruitGrown(levels));
+			batch.finish();
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that draws the leaves of every branch that
+	 * was drawn in full, in the order the leaves are stored. When a leaf is
+	 * smaller than the limit it is drawn as a dot in its color, once per pixel.
+	 *
+	 * @param xf
+	 * @param pixel
+	 * @param limit
+	 */
+	private void paintLeaves(AffineTransform xf, float pixel, float limit) {
+
+		LeafBuffer leaves = geometry.getLeaves();
+		int perBranch = geometry.getLeavesPerBranch();
+		boolean tiny = 10 < limit; // a leaf is 10 units long
+
+		for (int word = 0; word < drawnLeafBranches.length; word++) {
+			long bits = drawnLeafBranches[word];
+			while (bits != 0) {
+
+				int branch = (word << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				for (int i = branch * perBranch; i < (branch + 1) * perBranch && i < leaves.size(); i++) {
+
+					if (tiny) {
+						if (pixels.claim(xf, leaves.x(i), leaves.y(i))) {
+							batch.rect(leaves.color(i), leaves.x(i), leaves.y(i), pixel, pixel);
+						}
+						continue;
+					}
+					batch.oval(leaves.color(i), leaves.x(i), leaves.y(i), leaves.rotation(i), 5, 10);
+
+				}
+
+			}
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns how many fruit have grown when
+	 * levels levels have grown. Fruit is stored in the order of the branches it
+	 * grows on, so these are the first fruit. Which branch a fruit grows on is
+	 * found by going through the branch ends in order and matching each one with
+	 * the next fruit, which is placed at the end of its branch.
+	 *
+	 * @param levels
+	 * @return
+	 */
+	private int fruitGrown(float levels) {
+
+		LeafBuffer fruit = geometry.getFruit();
+		int treeLevels = geometry.getLevels();
+		if (levels >= treeLevels) {
+			return fruit.size();
+		}
+
+		if (fruitAbove == null) {
+
+			SegmentBuffer branches = geometry.getBranches();
+			this.fruitAbove = new int[treeLevels + 1];
+			int next = 0;
+			for (int i = 0; i < branches.size(); i++) {
+				if (((i + 1) & i) == 0) {
+					fruitAbove[TreeGenerator.depthOf(i)] = next; // i is the first branch of its level
+				}
+				if (i >= geometry.getFirstLeafBranch() && next < fruit.size() && fruit.x(next) == branches.x2(i)
+						&& fruit.y(next) == branches.y2(i)) {
+					next++;
+				}
+			}
+			fruitAbove[treeLevels] = next;
+
+		}
+		return fruitAbove[Math.max((int) levels, 0)];
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that draws the fruit inside the clip. A
+	 * fruit is 5 units wide, so when that is smaller than the limit it is left out
+	 * like the rest of the detail.
+	 *
+	 * @param clip
+	 * @param limit
+	 * @param count
+	 */
+	private void paintFruit(Rectangle clip, float limit, int count) {
+
+		if (limit > 5) {
+			return;
+		}
+
+		LeafBuffer fruit = geometry.getFruit();
+		for (int i = 0; i < count; i++) {
+
+			if (clip != null && (fruit.x(i) + SpatialIndex.LEAF_REACH < clip.x
+					|| fruit.x(i) - SpatialIndex.LEAF_REACH > clip.x + clip.width
+					|| fruit.y(i) + SpatialIndex.LEAF_REACH < clip.y
+					|| fruit.y(i) - SpatialIndex.LEAF_REACH > clip.y + clip.height)) {
+				continue;
+			}
+			batch.oval(fruit.color(i), fruit.x(i), fruit.y(i), fruit.rotation(i), 5, 5);
+
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that averages the colors of a palette,
+	 * alpha included, or returns the fallback for an empty palette.
+	 *
+	 * @param palette
+	 * @param fallback
+	 * @return
+	 */
+	private static Color averageColor(Color[] palette, Color fallback) {
+
+		if (palette.length == 0) {
+			return fallback;
+		}
+		int red = 0;
+		int green = 0;
+		int blue = 0;
+		int alpha = 0;
+		for (Color color : palette) {
+			red += color.getRed();
+			green += color.getGreen();
+			blue += color.getBlue();
+			alpha += color.getAlpha();
+		}
+		int n = palette.length;
+		return new Color(red / n, green / n, blue / n, alpha / n);
+
+	}
+
+	/**
+	 *
+	 * Returns the bounding box of branch i and everything growing from it.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public Rectangle2D.Float getSubtreeBounds(int i) {
+		return new Rectangle2D.Float(minX[i], minY[i], maxX[i] - minX[i], maxY[i] - minY[i]);
+	}
+
+	/**
+	 *
+	 * Sets whether the branches, leaves and fruit are collected into a few paths
+	 * before they are drawn, which they are by default, or drawn one at a time.
+	 * See ShapeBatch.
+	 *
+	 * @param batched
+	 */
+	public void setBatched(boolean batched) {
+		batch.setBatched(batched);
+	}
+
+	public boolean isBatched() {
+		return batch.isBatched();
+	}
+
+	/**
+	 *
+	 * Returns how many times the color, stroke or transform was changed during
+	 * the last paint.
+	 *
+	 * @return
+	 */
+	public int getStateChanges() {
+		return batch.getStateChanges();
+	}
+
+	/**
+	 *
+	 * Returns how many shapes and paths were drawn during the last paint.
+	 *
+	 * @return
+	 */
+	public int getDrawCalls() {
+		return batch.getDrawCalls();
+	}
+
+	public TreeGeometry getGeometry() {
+		return geometry;
+	}
+
+}
@@ -1,3 +1,5 @@
+package recursivetrees;
+
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.GridBagLayout;
@@ -37,6 +39,18 @@ public class MainFrame extends JFrame {
 
 		this.getContentPane().setLayout(new BorderLayout());
 		this.treeCanvas = new TreeCanvas(this.tree);
+
+		/*
+		 * The metrics are registered so they can be watched with JConsole. They are
+		 * only for watching, so the application runs without them if the MBean
+		 * server will not take them.
+		 */
+		try {
+			this.treeCanvas.getMetrics().register();
+		} catch (IllegalStateException e) {
+			System.err.println(e.getMessage() + " " + e.getCause());
+		}
+
 		this.wrapperPanel.add(treeCanvas, BorderLayout.CENTER);
 
 		this.leftPanel = new LeftPanel(this.tree, this.treeCanvas);
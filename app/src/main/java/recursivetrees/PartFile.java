@@ -0,0 +1,77 @@
+package recursivetrees;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * This class helps write a file so that it is never seen half written. The
+ * file is written to a part file next to it, named with PART_SUFFIX, and moved
+ * over the file only once it is complete. Until then, and if anything goes
+ * wrong, the file that was there before is left as it was, and the part file
+ * is deleted. The PngStripWriter, GeometryFile and SvgExporter write their
+ * files this way.
+ *
+ * @author frankdesilets
+ *
+ */
+public class PartFile {
+
+	/*
+	 * What is added to the name of a file for the file written until it is
+	 * finished.
+	 */
+	public static final String PART_SUFFIX = ".part";
+
+	/**
+	 *
+	 * Returns the part file of file.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static Path of(Path file) {
+		return file.resolveSibling(file.getFileName() + PART_SUFFIX);
+	}
+
+	/**
+	 *
+	 * Moves a finished part file over the file, in one step where the file system
+	 * can, so the file is never seen half written.
+	 *
+	 * @param part
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void moveIntoPlace(Path part, Path file) throws IOException {
+
+		try {
+			Files.move(part, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+	}
+
+	/**
+	 *
+	 * Deletes a part file that could not be finished, if it is there. Errors are
+	 * added to failure as suppressed exceptions, so the reason the file could not
+	 * be finished is the one that is reported.
+	 *
+	 * @param part
+	 * @param failure
+	 */
+	public static void delete(Path part, Throwable failure) {
+
+		try {
+			Files.deleteIfExists(part);
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+package recursivetrees;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+/**
+ * This class keeps one bit for every pixel of the clip, to remember which
+ * pixels a dot has been drawn on. LevelOfDetail and Forest draw detail that is
+ * too small to see as dots, and use it so that many dots falling on the same
+ * pixel only draw it once. The bits are kept from one paint to the next, so a
+ * mask only allocates when the clip grows.
+ *
+ * @author frankdesilets
+ *
+ */
+public class PixelMask {
+
+	private long[] pixels = new long[0];
+	private int x;
+	private int y;
+	private int width;
+	private int height;
+
+	/**
+	 *
+	 * Forgets which pixels have a dot, and makes sure there is a bit for every
+	 * pixel of the clip, which is in the coordinates of xf. Without a clip every
+	 * dot is drawn.
+	 *
+	 * @param xf
+	 * @param clip
+	 */
+	public void start(AffineTransform xf, Rectangle clip) {
+
+		if (clip == null) {
+			this.width = 0;
+			return;
+		}
+
+		Rectangle device = xf.createTransformedShape(clip).getBounds();
+		this.x = device.x;
+		this.y = device.y;
+		this.width = Math.max(device.width, 1);
+		this.height = Math.max(device.height, 1);
+		int words = (int) (((long) width * height + 63) >>> 6);
+		if (pixels.length < words) {
+			this.pixels = new long[words];
+		} else {
+			Arrays.fill(pixels, 0, words, 0);
+		}
+
+	}
+
+	/**
+	 *
+	 * Returns true if no dot has been drawn yet on the pixel that xf puts px and
+	 * py on, and marks it. Points outside the clip, and every point when there is
+	 * no clip, return true.
+	 *
+	 * @param xf
+	 * @param px
+	 * @param py
+	 * @return
+	 */
+	public boolean claim(AffineTransform xf, float px, float py) {
+
+		if (width == 0) {
+			return true;
+		}
+		int column = (int) Math.floor(xf.getScaleX() * px + xf.getShearX() * py + xf.getTranslateX()) - x;
+		int row = (int) Math.floor(xf.getShearY() * px + xf.getScaleY() * py + xf.getTranslateY()) - y;
+		if (column < 0 || row < 0 || column >= width || row >= height) {
+			return true;
+		}
+		int bit = row * width + column;
+		long mask = 1L << bit;
+		if ((pixels[bit >>> 6] & mask) != 0) {
+			return false;
+		}
+		pixels[bit >>> 6] |= mask;
+		return true;
+
+	}
+
+}
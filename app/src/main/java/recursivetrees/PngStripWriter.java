@@ -0,0 +1,302 @@
+package recursivetrees;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * This class writes a PNG file one row of pixels at a time, from the top of
+ * the image to the bottom, so an image far larger than the heap can be written
+ * without ever being held in memory as a whole. ImageIO can only write a
+ * complete image.
+ *
+ * The pixels are written as 8 bit RGBA. Every row is filtered with the Sub
+ * filter of the PNG format, which stores each byte as its difference from the
+ * same byte of the pixel to its left, and the rows are compressed as one
+ * stream into IDAT chunks of at most CHUNK_BYTES each. Only the compression
+ * state and one chunk are kept, however big the image is.
+ *
+ * A writer made for a file writes to its PartFile, and moves it into place
+ * only when close() has written every row. Until then, and if anything goes
+ * wrong, the file that was there before is left as it was, and the part file
+ * is deleted.
+ *
+ * @author frankdesilets
+ *
+ */
+public class PngStripWriter implements Closeable {
+
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+	/*
+	 * How many compressed bytes go into every IDAT chunk.
+	 */
+	public static final int CHUNK_BYTES = 1 << 16;
+
+	private final DataOutputStream out;
+	private final Path file; // where the image goes, or null when writing to a stream
+	private final Path part; // where it is written until it is finished
+	private final int width;
+	private final int height;
+	private final Deflater deflater = new Deflater();
+	private final ChunkStream chunks;
+	private final DeflaterOutputStream pixels;
+	private final byte[] row;
+	private int rowsWritten;
+
+	/**
+	 *
+	 * Starts a PNG file of the given size. The file is replaced, if it exists,
+	 * only once close() has written every row.
+	 *
+	 * @param file
+	 * @param width
+	 * @param height
+	 * @throws IOException
+	 */
+	public PngStripWriter(Path file, int width, int height) throws IOException {
+
+		this(null, file, width, height);
+
+	}
+
+	/**
+	 *
+	 * Writes the header for an image of the given size to out. out is closed by
+	 * close().
+	 *
+	 * @param out
+	 * @param width
+	 * @param height
+	 * @throws IOException
+	 */
+	public PngStripWriter(OutputStream out, int width, int height) throws IOException {
+
+		this(out, null, width, height);
+
+	}
+
+	/**
+	 *
+	 * This is a private helper constructor that writes the header to out, or to
+	 * the part file of file if it is not null.
+	 *
+	 * @param out
+	 * @param file
+	 * @param width
+	 * @param height
+	 * @throws IOException
+	 */
+	private PngStripWriter(OutputStream out, Path file, int width, int height) throws IOException {
+
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("A PNG must be at least 1 x 1, not " + width + " x " + height);
+		}
+		this.file = file;
+		this.part = file == null ? null : PartFile.of(file);
+		this.out = new DataOutputStream(
+				new BufferedOutputStream(part == null ? out : Files.newOutputStream(part), CHUNK_BYTES));
+		this.width = width;
+		this.height = height;
+		this.row = new byte[1 + 4 * width]; // the filter type, then RGBA for every pixel
+
+		try {
+
+			this.out.write(SIGNATURE);
+			byte[] header = new byte[13];
+			PngStripWriter.putInt(header, 0, width);
+			PngStripWriter.putInt(header, 4, height);
+			header[8] = 8; // bits per channel
+			header[9] = 6; // RGBA
+			header[10] = 0; // deflate
+			header[11] = 0; // adaptive filtering
+			header[12] = 0; // not interlaced
+			this.writeChunk("IHDR", header, header.length);
+
+		} catch (IOException e) {
+			this.out.close();
+			this.deletePart();
+			throw e;
+		}
+
+		this.chunks = new ChunkStream();
+		this.pixels = new DeflaterOutputStream(chunks, deflater, CHUNK_BYTES);
+
+	}
+
+	/**
+	 *
+	 * Writes the next row of the image from width ARGB pixels of argb, starting at
+	 * offset, like the pixels of a BufferedImage of TYPE_INT_ARGB.
+	 *
+	 * @param argb
+	 * @param offset
+	 * @throws IOException
+	 */
+	public void writeRow(int[] argb, int offset) throws IOException {
+
+		if (rowsWritten == height) {
+			throw new IllegalStateException("All " + height + " rows have already been written.");
+		}
+
+		row[0] = 1; // Sub
+		int left = 0;
+		for (int x = 0, i = 1; x < width; x++, i += 4) {
+
+			int pixel = argb[offset + x];
+			row[i] = (byte) ((pixel >>> 16) - (left >>> 16));
+			row[i + 1] = (byte) ((pixel >>> 8) - (left >>> 8));
+			row[i + 2] = (byte) (pixel - left);
+			row[i + 3] = (byte) ((pixel >>> 24) - (left >>> 24));
+			left = pixel;
+
+		}
+		pixels.write(row);
+		this.rowsWritten++;
+
+	}
+
+	/**
+	 *
+	 * Finishes the image, closes the file and moves it into place. Throws an
+	 * IOException if fewer rows were written than the image is high, since the
+	 * file would not be a valid PNG. The part file is then deleted instead.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+
+		boolean finished = false;
+		try {
+			pixels.finish();
+			chunks.flushChunk();
+			this.writeChunk("IEND", new byte[0], 0);
+			if (rowsWritten < height) {
+				throw new IOException("Only " + rowsWritten + " of " + height + " rows were written.");
+			}
+			out.close();
+			if (part != null) {
+				PartFile.moveIntoPlace(part, file);
+			}
+			finished = true;
+		} finally {
+			deflater.end();
+			out.close();
+			if (!finished) {
+				this.deletePart();
+			}
+		}
+
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getRowsWritten() {
+		return rowsWritten;
+	}
+
+	private void deletePart() throws IOException {
+
+		if (part != null) {
+			Files.deleteIfExists(part);
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that writes a chunk: its length, type, the
+	 * first length bytes of data, and the CRC of the type and data.
+	 *
+	 * @param type
+	 * @param data
+	 * @param length
+	 * @throws IOException
+	 */
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+
+	}
+
+	private static void putInt(byte[] bytes, int offset, int value) {
+
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+
+	}
+
+	/**
+	 * Collects the compressed pixels and writes them out as an IDAT chunk every
+	 * CHUNK_BYTES bytes.
+	 */
+	private class ChunkStream extends OutputStream {
+
+		private final byte[] chunk = new byte[CHUNK_BYTES];
+		private int used;
+
+		@Override
+		public void write(int b) throws IOException {
+
+			chunk[used++] = (byte) b;
+			if (used == chunk.length) {
+				this.flushChunk();
+			}
+
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+
+			while (len > 0) {
+
+				int count = Math.min(len, chunk.length - used);
+				System.arraycopy(b, off, chunk, used, count);
+				this.used += count;
+				off += count;
+				len -= count;
+				if (used == chunk.length) {
+					this.flushChunk();
+				}
+
+			}
+
+		}
+
+		void flushChunk() throws IOException {
+
+			if (used > 0) {
+				PngStripWriter.this.writeChunk("IDAT", chunk, used);
+				this.used = 0;
+			}
+
+		}
+
+	}
+
+}
@@ -1,3 +1,4 @@
+package recursivetrees;
 
 /**
  * This class contains the main method. It's purpose is to create a
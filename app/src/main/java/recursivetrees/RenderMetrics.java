@@ -0,0 +1,189 @@
+package recursivetrees;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class collects the RenderStats of the frames a RenderScheduler hands to
+ * the canvas, along with the counts of its FrameCache, so it can be seen where
+ * the time goes on a given machine. It keeps the stats of the newest frame and
+ * totals over all frames since it was made or reset.
+ *
+ * It is a standard MBean (see RenderMetricsMBean), so once register() is
+ * called it can be watched with JConsole or any other JMX client under
+ * OBJECT_NAME. The averages only count frames that were generated, not the ones
+ * that came from the cache.
+ *
+ * Frames are recorded on the Event Dispatch Thread and read from the JMX
+ * threads, so all access is synchronized.
+ *
+ * @author frankdesilets
+ *
+ */
+public class RenderMetrics implements RenderMetricsMBean {
+
+	public static final String OBJECT_NAME = "recursivetrees:type=RenderMetrics";
+
+	private final FrameCache cache;
+	private RenderStats last;
+	private long frames;
+	private long generatedFrames;
+	private long generationNanos;
+	private long rasterNanos;
+
+	public RenderMetrics(FrameCache cache) {
+
+		this.cache = cache;
+
+	}
+
+	/**
+	 *
+	 * Records the stats of a frame that is about to be shown.
+	 *
+	 * @param stats
+	 */
+	public synchronized void record(RenderStats stats) {
+
+		this.last = stats;
+		this.frames++;
+		if (!stats.isCacheHit()) {
+			this.generatedFrames++;
+			this.generationNanos += stats.getGenerationNanos();
+			this.rasterNanos += stats.getRasterNanos();
+		}
+
+	}
+
+	/**
+	 *
+	 * Registers the metrics with the platform MBean server under OBJECT_NAME,
+	 * replacing any metrics registered there before. Throws an
+	 * IllegalStateException if the server will not take them.
+	 */
+	public void register() {
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("The render metrics could not be registered.", e);
+		}
+
+	}
+
+	/**
+	 *
+	 * Returns the stats of the newest frame, or null if no frame has been shown
+	 * yet.
+	 *
+	 * @return
+	 */
+	public synchronized RenderStats getLastStats() {
+		return last;
+	}
+
+	@Override
+	public synchronized long getFramesRendered() {
+		return frames;
+	}
+
+	@Override
+	public synchronized double getLastGenerationMillis() {
+		return last == null ? 0 : last.getGenerationNanos() / 1e6;
+	}
+
+	@Override
+	public synchronized double getLastRasterMillis() {
+		return last == null ? 0 : last.getRasterNanos() / 1e6;
+	}
+
+	@Override
+	public synchronized double getLastTotalMillis() {
+		return last == null ? 0 : last.getTotalNanos() / 1e6;
+	}
+
+	@Override
+	public synchronized long getLastBranchCount() {
+		return last == null ? 0 : last.getBranches();
+	}
+
+	@Override
+	public synchronized long getLastLeafCount() {
+		return last == null ? 0 : last.getLeaves();
+	}
+
+	@Override
+	public synchronized long getLastFruitCount() {
+		return last == null ? 0 : last.getFruit();
+	}
+
+	@Override
+	public synchronized long getLastAllocatedBytes() {
+		return last == null ? 0 : last.getAllocatedBytes();
+	}
+
+	@Override
+	public synchronized boolean isLastCacheHit() {
+		return last != null && last.isCacheHit();
+	}
+
+	@Override
+	public synchronized double getAverageGenerationMillis() {
+		return generatedFrames == 0 ? 0 : generationNanos / 1e6 / generatedFrames;
+	}
+
+	@Override
+	public synchronized double getAverageRasterMillis() {
+		return generatedFrames == 0 ? 0 : rasterNanos / 1e6 / generatedFrames;
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cache.getHits();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cache.getMisses();
+	}
+
+	@Override
+	public long getCacheEvictions() {
+		return cache.getEvictions();
+	}
+
+	@Override
+	public long getCacheBytes() {
+		return cache.getBytes();
+	}
+
+	@Override
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 *
+	 * Forgets the newest frame and the totals. The counts of the cache are its
+	 * own and are kept.
+	 */
+	@Override
+	public synchronized void reset() {
+
+		this.last = null;
+		this.frames = 0;
+		this.generatedFrames = 0;
+		this.generationNanos = 0;
+		this.rasterNanos = 0;
+
+	}
+
+}
@@ -0,0 +1,47 @@
+package recursivetrees;
+
+/**
+ * The management interface of RenderMetrics, as seen in JConsole or any other
+ * JMX client. Times are in milliseconds, and the "last" values are those of
+ * the newest frame shown.
+ *
+ * @author frankdesilets
+ *
+ */
+public interface RenderMetricsMBean {
+
+	long getFramesRendered();
+
+	double getLastGenerationMillis();
+
+	double getLastRasterMillis();
+
+	double getLastTotalMillis();
+
+	long getLastBranchCount();
+
+	long getLastLeafCount();
+
+	long getLastFruitCount();
+
+	long getLastAllocatedBytes();
+
+	boolean isLastCacheHit();
+
+	double getAverageGenerationMillis();
+
+	double getAverageRasterMillis();
+
+	long getCacheHits();
+
+	long getCacheMisses();
+
+	long getCacheEvictions();
+
+	long getCacheBytes();
+
+	int getCacheSize();
+
+	void reset();
+
+}
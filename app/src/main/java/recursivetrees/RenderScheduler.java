@@ -0,0 +1,772 @@
+package recursivetrees;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * This class generates and draws trees on a background thread, so the GUI
+ * stays responsive however many segments the tree has. Only the newest request
+ * matters: when a new one comes in while the last one is still running, the
+ * last one is cancelled. Finished frames are handed to a Listener on the Event
+ * Dispatch Thread.
+ * 
+ * When only the leaves, fruit or colors of the tree have changed since the last
+ * frame, the branches of that frame are kept and only decorated again, and its
+ * LevelOfDetail, and its SpatialIndex if it was built, are reused as far as
+ * they still fit. The SpatialIndex of a frame is only built when it is asked
+ * for (see requestIndex()), on the same thread. A tree that is growing gets its
+ * new levels added to the branches of the last frame.
+ * 
+ * The branches, leaves and fruit are drawn into layers of their own (see
+ * TreeFrame), and a layer of the last frame is used again if its part of the
+ * tree and its colors have not changed. Changing the fruit color therefore
+ * only draws the fruit again.
+ * 
+ * Finished frames are also kept in a FrameCache, so going back to settings
+ * that were shown before shows their frame again straight away, without
+ * generating or drawing anything. By default the cache may hold a quarter of
+ * the heap.
+ * 
+ * How long every frame took to make, and how big it is, is recorded in a
+ * RenderStats that goes with the frame, and the stats of the frames that are
+ * shown are collected in RenderMetrics. Generating and drawing are also
+ * recorded as Java Flight Recorder events (see TreeGenerationEvent and
+ * LayerRasterEvent), which cost next to nothing when no recording is running.
+ * 
+ * A request that fails, because the tree would not fit in memory or because
+ * anything else went wrong while making it, is reported to the Listener
+ * instead of a frame, and the frame that is shown stays. Before a tree is
+ * generated, its estimated size is checked against MEMORY_SHARE of the heap.
+ * 
+ * In forest mode a whole Forest is generated instead and drawn into one image
+ * (see ForestFrame). The trees of a forest are kept in one of two
+ * GeometryPools, taking turns, so the next forest reuses the buffers of the one
+ * before the forest that is shown without changing the one that is shown. A
+ * pool keeps only the arrays its newest forest used, and both let go of theirs
+ * when the one tree is shown again. Before a forest is generated, its estimated
+ * size is checked against MEMORY_SHARE of the heap, like a tree.
+ * 
+ * When the canvas zooms or moves a forest, the forest is drawn again at the new
+ * view on the same thread (see requestForestView()), so the trees are never
+ * drawn on the Event Dispatch Thread.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class RenderScheduler {
+
+	/**
+	 * 
+	 * Receives the frames made by the scheduler. It is always called on the Event
+	 * Dispatch Thread.
+	 *
+	 */
+	public interface Listener {
+
+		void frameReady(TreeFrame frame);
+
+		void forestReady(ForestFrame frame);
+
+		void forestViewReady(ForestFrame frame, AffineTransform view, BufferedImage image);
+
+		void indexReady(TreeFrame frame);
+
+		void renderFailed(Throwable error);
+
+	}
+
+	/*
+	 * How much of the heap one tree, with its layers and index, or one forest with
+	 * its image may take. The rest is left for the frame that is shown and the
+	 * FrameCache.
+	 */
+	public static final double MEMORY_SHARE = 0.5;
+
+	private final Listener listener;
+	private final ExecutorService executor;
+	private Future<?> currentJob;
+	private TreeGenerator currentGenerator;
+	private ForestGenerator currentForestGenerator;
+	private final GeometryPool[] forestPools = { new GeometryPool(), new GeometryPool() };
+	private final FrameCache cache = new FrameCache(Runtime.getRuntime().maxMemory() / 4);
+	private final RenderMetrics metrics = new RenderMetrics(cache);
+	private int requestCount; // used to recognize the newest request
+	private Future<?> viewJob;
+	private int viewCount; // used to recognize the newest view
+	private Future<?> indexJob;
+
+	public RenderScheduler(Listener listener) {
+
+		this.listener = listener;
+
+		/*
+		 * A single daemon thread does the work, so an unfinished render never keeps
+		 * the application from exiting.
+		 */
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread thread = new Thread(runnable, "Tree Renderer");
+				thread.setDaemon(true);
+				return thread;
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * 
+	 * Asks for a new frame of the tree, planted at x and y, in an image of the
+	 * given size. The settings of the tree are copied right away, so the tree can
+	 * be changed again as soon as this returns. Any request that is still running
+	 * is cancelled. This must be called on the Event Dispatch Thread.
+	 * 
+	 * Only the first levels levels of the tree are shown, or the whole tree if
+	 * levels is 0. The earlier frame is the one being shown, or null. It must have
+	 * been made with the tree planted at the same x and y.
+	 * 
+	 * @param tree
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param levels
+	 * @param config
+	 * @param earlier
+	 */
+	public void request(Tree tree, int x, int y, int width, int height, int levels, GraphicsConfiguration config,
+			TreeFrame earlier) {
+
+		this.cancel();
+
+		Tree settings = new Tree(tree);
+		TreeGenerator generator = new TreeGenerator(settings);
+		int request = ++requestCount;
+		int wantedLevels = levels <= 0 ? settings.getMaxSegments() : Math.min(levels, settings.getMaxSegments());
+		FrameCache.Key key = FrameCache.key(settings, x, y, wantedLevels, width, height);
+
+		this.currentGenerator = generator;
+		this.currentJob = executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+
+					/*
+					 * The one tree is shown instead of a forest, so the arrays of the forests
+					 * are let go.
+					 */
+					for (GeometryPool pool : forestPools) {
+						pool.reset();
+						pool.trim();
+					}
+
+					long start = System.nanoTime();
+					long allocated = RenderStats.threadAllocatedBytes();
+
+					/*
+					 * A frame made from the same settings before is shown again as it is, with
+					 * the revisions of this request.
+					 */
+					TreeFrame cached = cache.get(key);
+					if (cached != null) {
+						RenderStats stats = RenderScheduler.stats(cached.getGeometry(), 0, 0, start, allocated, true);
+						RenderScheduler.this.deliver(request,
+								new TreeFrame(cached.getGeometry(), cached.getBranchLayer(), cached.getLeafLayer(),
+										cached.getFruitLayer(), cached.getBuiltIndex(), cached.getDetail(),
+										settings.getRevision(), settings.getGeometryRevision(), stats));
+						return;
+					}
+
+					RenderScheduler.checkMemory(RenderScheduler.estimateBytes(settings, width, height));
+
+					/*
+					 * The tree is generated, and then drawn unless a newer request has come in
+					 * in the meantime. The SpatialIndex is left for the frame to build if the
+					 * canvas ever needs it. It is drawn through its LevelOfDetail, which
+					 * skips the parts that grow outside the image. At full size no branch is
+					 * small enough to be collapsed, since every branch is at least 10 pixels
+					 * long. If the branches have not changed, the earlier frame is only
+					 * decorated again, and if it has fewer levels it is grown.
+					 */
+					TreeGenerationEvent event = new TreeGenerationEvent(settings, wantedLevels, 1);
+					event.begin();
+					TreeFrame previous = null;
+					TreeGeometry geometry;
+					boolean sameBranches = earlier != null
+							&& earlier.getGeometryRevision() == settings.getGeometryRevision();
+					if (sameBranches && earlier.getGeometry().getLevels() == wantedLevels) {
+						previous = earlier;
+						geometry = generator.redecorate(earlier.getGeometry());
+					} else if (sameBranches && earlier.getGeometry().getLevels() < wantedLevels) {
+						geometry = generator.grow(earlier.getGeometry(), wantedLevels, x, y);
+					} else if (wantedLevels < settings.getMaxSegments()) {
+						geometry = generator.grow(null, wantedLevels, x, y);
+					} else {
+						geometry = generator.generate(x, y);
+					}
+					if (generator.isCancelled()) {
+						return;
+					}
+					long generationNanos = System.nanoTime() - start;
+					if (event.shouldCommit()) {
+						event.setBranches(geometry.getBranches().size());
+						event.commit();
+					}
+					LevelOfDetail detail = new LevelOfDetail(geometry, previous == null ? null : previous.getDetail());
+					if (previous != null && (previous.getWidth() != Math.max(width, 1)
+							|| previous.getHeight() != Math.max(height, 1))) {
+						previous = null;
+					}
+					TreeGeometry kept = previous == null ? null : previous.getGeometry();
+
+					/*
+					 * The leaves that are drawn depend on which branches are drawn, so the leaf
+					 * layer can only be kept along with the branches.
+					 */
+					boolean keepBranches = kept != null && kept.getBranches() == geometry.getBranches();
+					boolean keepBranchLayer = keepBranches
+							&& kept.getBranchColor().equals(geometry.getBranchColor());
+					boolean keepLeafLayer = keepBranches && kept.getLeaves() == geometry.getLeaves()
+							&& Arrays.equals(kept.getLeafPalette(), geometry.getLeafPalette());
+					boolean keepFruitLayer = kept != null && kept.getFruit() == geometry.getFruit()
+							&& Arrays.equals(kept.getFruitPalette(), geometry.getFruitPalette());
+
+					long rasterStart = System.nanoTime();
+					BufferedImage branchLayer = keepBranchLayer ? previous.getBranchLayer()
+							: RenderScheduler.paintLayer(detail, LevelOfDetail.BRANCHES, width, height, config);
+					BufferedImage leafLayer = keepLeafLayer ? previous.getLeafLayer()
+							: RenderScheduler.paintLayer(detail, LevelOfDetail.LEAVES, width, height, config);
+					BufferedImage fruitLayer = keepFruitLayer ? previous.getFruitLayer()
+							: RenderScheduler.paintLayer(detail, LevelOfDetail.FRUIT, width, height, config);
+					long rasterNanos = System.nanoTime() - rasterStart;
+					if (generator.isCancelled()) {
+						return;
+					}
+					RenderStats stats = RenderScheduler.stats(geometry, generationNanos, rasterNanos, start, allocated,
+							false);
+					TreeFrame frame = new TreeFrame(geometry, branchLayer, leafLayer, fruitLayer,
+							previous == null ? null : previous.getBuiltIndex(), detail,
+							settings.getRevision(), settings.getGeometryRevision(), stats);
+					cache.put(key, frame);
+					RenderScheduler.this.deliver(request, frame);
+
+				} catch (CancellationException e) {
+					// a newer request replaced this one
+				} catch (RuntimeException | OutOfMemoryError e) {
+					RenderScheduler.this.fail(request, e);
+				}
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * 
+	 * Asks for a new frame of a forest of count trees with the settings of the
+	 * tree, in an image of the given size. Like request(), the settings are copied
+	 * right away, any request that is still running is cancelled, and this must
+	 * be called on the Event Dispatch Thread. The earlier frame is the forest
+	 * being shown, or null.
+	 * 
+	 * @param tree
+	 * @param count
+	 * @param width
+	 * @param height
+	 * @param config
+	 * @param earlier
+	 */
+	public void requestForest(Tree tree, int count, int width, int height, GraphicsConfiguration config,
+			ForestFrame earlier) {
+
+		this.cancel();
+
+		Tree settings = new Tree(tree);
+		ForestGenerator generator = new ForestGenerator(settings, count);
+		int request = ++requestCount;
+
+		/*
+		 * The forest that is shown keeps its pool, and the new forest goes into the
+		 * other one. The job before this one has always finished with its pool
+		 * before this job starts, since there is only one render thread.
+		 */
+		boolean firstInUse = earlier != null && earlier.getForest().getPool() == forestPools[0];
+		GeometryPool buffers = forestPools[firstInUse ? 1 : 0];
+
+		this.currentForestGenerator = generator;
+		this.currentJob = executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+
+					RenderScheduler.checkMemory(RenderScheduler.estimateForestBytes(settings, count, width, height));
+
+					long start = System.nanoTime();
+					long allocated = RenderStats.threadAllocatedBytes();
+					TreeGenerationEvent event = new TreeGenerationEvent(settings,
+							Math.min(settings.getMaxSegments(), ForestGenerator.MAX_SEGMENTS), count);
+					event.begin();
+					Forest forest = generator.generate(width, height, buffers);
+					buffers.trim();
+					if (generator.isCancelled()) {
+						return;
+					}
+					if (event.shouldCommit()) {
+						event.setBranches(forest.getBranchCount());
+						event.commit();
+					}
+
+					long rasterStart = System.nanoTime();
+					LayerRasterEvent raster = new LayerRasterEvent("forest", width, height, forest.getBranchCount());
+					raster.begin();
+					BufferedImage image = RenderScheduler.createImage(width, height, config);
+					Graphics2D g2 = image.createGraphics();
+					g2.setClip(0, 0, image.getWidth(), image.getHeight());
+					forest.paint(g2);
+					g2.dispose();
+					raster.commit();
+					long end = System.nanoTime();
+					if (generator.isCancelled()) {
+						return;
+					}
+
+					long leaves = 0;
+					long fruit = 0;
+					for (int i = 0; i < forest.size(); i++) {
+						leaves += forest.getTree(i).getLeaves().size();
+						fruit += forest.getTree(i).getFruit().size();
+					}
+					RenderStats stats = new RenderStats(rasterStart - start, end - rasterStart, end - start,
+							forest.getBranchCount(), leaves, fruit, RenderScheduler.allocatedSince(allocated), false);
+					ForestFrame frame = new ForestFrame(forest, image, settings.getRevision(), stats);
+
+					SwingUtilities.invokeLater(new Runnable() {
+
+						@Override
+						public void run() {
+
+							if (request == requestCount) {
+								metrics.record(stats);
+								listener.forestReady(frame);
+							}
+
+						}
+
+					});
+
+				} catch (CancellationException e) {
+					// a newer request replaced this one
+				} catch (RuntimeException | OutOfMemoryError e) {
+					RenderScheduler.this.fail(request, e);
+				}
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * 
+	 * Asks for the forest of a frame to be drawn through the view transform into
+	 * an image of the given size, for a canvas that is zoomed or moved. The image
+	 * is handed to the Listener with the frame and the view it was drawn at. Only
+	 * the newest view matters: a view that has not started when the next one is
+	 * asked for is dropped. A view does not cancel the frame being made, but it
+	 * waits for it, since there is only one render thread. This must be called on
+	 * the Event Dispatch Thread.
+	 * 
+	 * The trees of the frame must still be in their GeometryPool when the view is
+	 * drawn. Only a job asked for once the frame is no longer shown reuses its
+	 * pool, and the jobs run in the order they were asked for, so the view is
+	 * always drawn first.
+	 * 
+	 * @param frame
+	 * @param view
+	 * @param width
+	 * @param height
+	 * @param config
+	 */
+	public void requestForestView(ForestFrame frame, AffineTransform view, int width, int height,
+			GraphicsConfiguration config) {
+
+		if (viewJob != null) {
+			viewJob.cancel(false);
+		}
+
+		AffineTransform transform = new AffineTransform(view);
+		int number = ++viewCount;
+		int request = requestCount;
+		this.viewJob = executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+
+					Forest forest = frame.getForest();
+					LayerRasterEvent raster = new LayerRasterEvent("forest view", width, height,
+							forest.getBranchCount());
+					raster.begin();
+					BufferedImage image = RenderScheduler.createImage(width, height, config);
+					Graphics2D g2 = image.createGraphics();
+					g2.setClip(0, 0, image.getWidth(), image.getHeight());
+					g2.transform(transform);
+					forest.paint(g2);
+					g2.dispose();
+					raster.commit();
+
+					SwingUtilities.invokeLater(new Runnable() {
+
+						@Override
+						public void run() {
+
+							if (number == viewCount) {
+								listener.forestViewReady(frame, transform, image);
+							}
+
+						}
+
+					});
+
+				} catch (RuntimeException | OutOfMemoryError e) {
+					RenderScheduler.this.fail(request, e);
+				}
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * 
+	 * Asks for the SpatialIndex of a frame to be built, and hands the frame to the
+	 * Listener once it has been. Like a view, building the index does not cancel
+	 * the frame being made, and it is dropped if it has not started when a new
+	 * tree or forest is asked for. This must be called on the Event Dispatch
+	 * Thread.
+	 * 
+	 * @param frame
+	 */
+	public void requestIndex(TreeFrame frame) {
+
+		int request = requestCount;
+		this.indexJob = executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+
+					frame.getIndex();
+					SwingUtilities.invokeLater(new Runnable() {
+
+						@Override
+						public void run() {
+							listener.indexReady(frame);
+						}
+
+					});
+
+				} catch (RuntimeException | OutOfMemoryError e) {
+					RenderScheduler.this.fail(request, e);
+				}
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * 
+	 * Cancels the request that is running, if there is one, and drops the views
+	 * and indexes that have not started.
+	 */
+	public void cancel() {
+
+		if (viewJob != null) {
+			viewJob.cancel(false);
+			this.viewJob = null;
+		}
+		if (indexJob != null) {
+			indexJob.cancel(false);
+			this.indexJob = null;
+		}
+		if (currentJob != null && !currentJob.isDone()) {
+			if (currentGenerator != null) {
+				currentGenerator.cancel();
+			}
+			if (currentForestGenerator != null) {
+				currentForestGenerator.cancel();
+			}
+			currentJob.cancel(true);
+		}
+		this.currentJob = null;
+		this.currentGenerator = null;
+		this.currentForestGenerator = null;
+
+	}
+
+	/**
+	 * 
+	 * Returns true while a request is being worked on.
+	 * 
+	 * @return
+	 */
+	public boolean isBusy() {
+		return currentJob != null && !currentJob.isDone();
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that hands a frame over on the Event
+	 * Dispatch Thread, where it is only used if it still belongs to the newest
+	 * request.
+	 * 
+	 * @param request
+	 * @param frame
+	 */
+	private void deliver(int request, TreeFrame frame) {
+
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+
+				if (request == requestCount) {
+					metrics.record(frame.getStats());
+					listener.frameReady(frame);
+				}
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that reports a request that failed on the
+	 * Event Dispatch Thread, if it is still the newest request.
+	 * 
+	 * @param request
+	 * @param error
+	 */
+	private void fail(int request, Throwable error) {
+
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+
+				if (request == requestCount) {
+					listener.renderFailed(error);
+				}
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * 
+	 * Returns about how many bytes a frame of the tree takes in an image of
+	 * width x height: the buffers of the tree, its three layers and its index.
+	 * 
+	 * @param tree
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static long estimateBytes(Tree tree, int width, int height) {
+
+		long layers = 3L * 4 * Math.max(width, 1) * Math.max(height, 1);
+		return TreeGenerator.estimateBytes(tree) + layers + 16L * SegmentBuffer.branchCount(tree.getMaxSegments());
+
+	}
+
+	/**
+	 * 
+	 * Returns about how many bytes a frame of a forest of count trees with the
+	 * settings of the tree takes in an image of width x height: the buffers of
+	 * the trees and the image.
+	 * 
+	 * @param tree
+	 * @param count
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static long estimateForestBytes(Tree tree, int count, int width, int height) {
+
+		long image = 4L * Math.max(width, 1) * Math.max(height, 1);
+		return ForestGenerator.estimateBytes(tree, count) + image;
+
+	}
+
+	/**
+	 * 
+	 * Returns how many bytes one frame may take, MEMORY_SHARE of the heap.
+	 * 
+	 * @return
+	 */
+	public static long memoryBudget() {
+		return (long) (Runtime.getRuntime().maxMemory() * MEMORY_SHARE);
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that throws an IllegalStateException if
+	 * bytes are more than memoryBudget().
+	 * 
+	 * @param bytes
+	 */
+	private static void checkMemory(long bytes) {
+
+		long budget = RenderScheduler.memoryBudget();
+		if (bytes > budget) {
+			throw new IllegalStateException(String.format("This needs about %,d MB, but only %,d MB are available.",
+					bytes >> 20, budget >> 20));
+		}
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that puts together the stats of a frame of
+	 * the given tree, started at start, while allocated bytes had been allocated.
+	 * 
+	 * @param geometry
+	 * @param generationNanos
+	 * @param rasterNanos
+	 * @param start
+	 * @param allocated
+	 * @param cacheHit
+	 * @return
+	 */
+	private static RenderStats stats(TreeGeometry geometry, long generationNanos, long rasterNanos, long start,
+			long allocated, boolean cacheHit) {
+
+		return new RenderStats(generationNanos, rasterNanos, System.nanoTime() - start,
+				geometry.getBranches().size(), geometry.getLeaves().size(), geometry.getFruit().size(),
+				RenderScheduler.allocatedSince(allocated), cacheHit);
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that returns how many bytes the current
+	 * thread has allocated since it had allocated allocated bytes, or -1 if the
+	 * JVM cannot tell.
+	 * 
+	 * @param allocated
+	 * @return
+	 */
+	private static long allocatedSince(long allocated) {
+
+		long now = RenderStats.threadAllocatedBytes();
+		return allocated < 0 || now < 0 ? -1 : now - allocated;
+
+	}
+
+	/**
+	 * 
+	 * Returns the metrics of the frames handed to the listener.
+	 * 
+	 * @return
+	 */
+	public RenderMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * 
+	 * Returns the cache of finished frames.
+	 * 
+	 * @return
+	 */
+	public FrameCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * 
+	 * Draws one layer of the tree, through its LevelOfDetail, into a new image of
+	 * the given size, and records it as a LayerRasterEvent.
+	 * 
+	 * @param detail
+	 * @param layer
+	 * @param width
+	 * @param height
+	 * @param config
+	 * @return
+	 */
+	private static BufferedImage paintLayer(LevelOfDetail detail, int layer, int width, int height,
+			GraphicsConfiguration config) {
+
+		TreeGeometry geometry = detail.getGeometry();
+		LayerRasterEvent event;
+		if (layer == LevelOfDetail.BRANCHES) {
+			event = new LayerRasterEvent("branches", width, height, geometry.getBranches().size());
+		} else if (layer == LevelOfDetail.LEAVES) {
+			event = new LayerRasterEvent("leaves", width, height, geometry.getLeaves().size());
+		} else {
+			event = new LayerRasterEvent("fruit", width, height, geometry.getFruit().size());
+		}
+		event.begin();
+
+		BufferedImage image = RenderScheduler.createImage(width, height, config);
+		Graphics2D g2 = image.createGraphics();
+		g2.setClip(0, 0, image.getWidth(), image.getHeight());
+		detail.paint(g2, LevelOfDetail.DEFAULT_THRESHOLD, Float.POSITIVE_INFINITY, layer);
+		g2.dispose();
+		event.commit();
+		return image;
+
+	}
+
+	/**
+	 * 
+	 * Creates a transparent image of the given size, compatible with the screen
+	 * when a graphics configuration is known.
+	 * 
+	 * @param width
+	 * @param height
+	 * @param config
+	 * @return
+	 */
+	static BufferedImage createImage(int width, int height, GraphicsConfiguration config) {
+
+		width = Math.max(width, 1);
+		height = Math.max(height, 1);
+		if (config != null) {
+			return config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		}
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+	}
+
+}
@@ -0,0 +1,127 @@
+package recursivetrees;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * This class holds what it took to make one frame: how long the tree took to
+ * generate and to draw, how many branches, leaves and fruit it has, how many
+ * bytes were allocated for it, and whether it came from the FrameCache. Like
+ * the frame it belongs to, it is made on the render thread and never changed.
+ *
+ * The bytes are those allocated by the render thread, which allocates the
+ * buffers of the tree and the images it is drawn into. Small objects made by
+ * the threads that help generate a large tree in parallel are not counted.
+ *
+ * @author frankdesilets
+ *
+ */
+public class RenderStats {
+
+	private final long generationNanos;
+	private final long rasterNanos;
+	private final long totalNanos;
+	private final long branches;
+	private final long leaves;
+	private final long fruit;
+	private final long allocatedBytes;
+	private final boolean cacheHit;
+
+	public RenderStats(long generationNanos, long rasterNanos, long totalNanos, long branches, long leaves, long fruit,
+			long allocatedBytes, boolean cacheHit) {
+
+		this.generationNanos = generationNanos;
+		this.rasterNanos = rasterNanos;
+		this.totalNanos = totalNanos;
+		this.branches = branches;
+		this.leaves = leaves;
+		this.fruit = fruit;
+		this.allocatedBytes = allocatedBytes;
+		this.cacheHit = cacheHit;
+
+	}
+
+	/**
+	 *
+	 * Returns how many bytes the current thread has allocated since it started, or
+	 * -1 if the JVM cannot tell. The difference of two calls is what was allocated
+	 * in between.
+	 *
+	 * @return
+	 */
+	public static long threadAllocatedBytes() {
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+			if (counting.isThreadAllocatedMemorySupported() && counting.isThreadAllocatedMemoryEnabled()) {
+				return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+
+	}
+
+	/**
+	 *
+	 * Returns how long generating the tree took, in nanoseconds. For a frame from
+	 * the cache this is 0.
+	 *
+	 * @return
+	 */
+	public long getGenerationNanos() {
+		return generationNanos;
+	}
+
+	/**
+	 *
+	 * Returns how long drawing the tree into its images took, in nanoseconds. For
+	 * a frame from the cache this is 0.
+	 *
+	 * @return
+	 */
+	public long getRasterNanos() {
+		return rasterNanos;
+	}
+
+	/**
+	 *
+	 * Returns how long making the whole frame took, in nanoseconds, including
+	 * looking in the cache and building the LevelOfDetail besides generating and
+	 * drawing. The SpatialIndex is only built later, when a zoomed view needs it,
+	 * so it is not included.
+	 *
+	 * @return
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getBranches() {
+		return branches;
+	}
+
+	public long getLeaves() {
+		return leaves;
+	}
+
+	public long getFruit() {
+		return fruit;
+	}
+
+	/**
+	 *
+	 * Returns how many bytes the render thread allocated for the frame, or -1 if
+	 * the JVM cannot tell.
+	 *
+	 * @return
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public boolean isCacheHit() {
+		return cacheHit;
+	}
+
+}
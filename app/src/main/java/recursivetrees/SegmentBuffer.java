@@ -0,0 +1,210 @@
+package recursivetrees;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * This class stores the branch segments of a generated Tree as parallel
+ * primitive arrays, one array per value, instead of one object per branch.
+ * Segment i is made up of x1[i], y1[i], x2[i], y2[i], stroke[i] and depth[i].
+ * 
+ * The arrays are sized up front from the amount of segments in the Tree, since
+ * a tree with maxSegments levels always has 2^maxSegments - 1 branches. This
+ * keeps a branch to 24 bytes, even when there are millions of them.
+ * 
+ * The arrays are held in FloatBuffers and IntBuffers, which wrap plain arrays
+ * for a generated tree but can also be views of a memory-mapped file when a
+ * tree is loaded by GeometryFile. Either way the values are read the same.
+ * 
+ * Branches are stored like a heap: the trunk is at index 0 and the two
+ * branches growing from branch i are at 2i + 1 and 2i + 2, so every level of
+ * the tree is one run of indexes.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class SegmentBuffer {
+
+	/*
+	 * With more levels than this the amount of branches no longer fits in an int.
+	 */
+	public static final int MAX_LEVELS = 30;
+
+	/*
+	 * Four floats and two ints.
+	 */
+	public static final int BYTES_PER_BRANCH = 24;
+
+	private final FloatBuffer x1;
+	private final FloatBuffer y1;
+	private final FloatBuffer x2;
+	private final FloatBuffer y2;
+	private final IntBuffer stroke;
+	private final IntBuffer depth;
+	private int size;
+
+	/**
+	 * 
+	 * Creates a buffer big enough to hold every branch of a tree with the given
+	 * amount of levels.
+	 * 
+	 * @param maxSegments
+	 */
+	public SegmentBuffer(int maxSegments) {
+
+		int capacity = SegmentBuffer.branchCount(maxSegments);
+		this.x1 = FloatBuffer.wrap(new float[capacity]);
+		this.y1 = FloatBuffer.wrap(new float[capacity]);
+		this.x2 = FloatBuffer.wrap(new float[capacity]);
+		this.y2 = FloatBuffer.wrap(new float[capacity]);
+		this.stroke = IntBuffer.wrap(new int[capacity]);
+		this.depth = IntBuffer.wrap(new int[capacity]);
+
+	}
+
+	/**
+	 * 
+	 * Creates a buffer around values that already exist, such as the views of a
+	 * loaded file. Each buffer holds one value for every branch, starting at index
+	 * 0, and the buffer is full.
+	 * 
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param stroke
+	 * @param depth
+	 */
+	SegmentBuffer(FloatBuffer x1, FloatBuffer y1, FloatBuffer x2, FloatBuffer y2, IntBuffer stroke,
+			IntBuffer depth) {
+
+		this.x1 = x1;
+		this.y1 = y1;
+		this.x2 = x2;
+		this.y2 = y2;
+		this.stroke = stroke;
+		this.depth = depth;
+		this.size = x1.capacity();
+
+	}
+
+	/**
+	 * 
+	 * Creates a second buffer around the same values as another one, with the
+	 * same size. Each buffer has its own size, so a growing tree can store new
+	 * branches past the end of a finished buffer without changing what that
+	 * buffer holds.
+	 * 
+	 * @param other
+	 */
+	SegmentBuffer(SegmentBuffer other) {
+
+		this.x1 = other.x1;
+		this.y1 = other.y1;
+		this.x2 = other.x2;
+		this.y2 = other.y2;
+		this.stroke = other.stroke;
+		this.depth = other.depth;
+		this.size = other.size;
+
+	}
+
+	/**
+	 * 
+	 * Returns how many branches a tree with the given amount of levels has, which
+	 * is 2^maxSegments - 1 since every branch splits in two.
+	 * 
+	 * @param maxSegments
+	 * @return
+	 */
+	public static int branchCount(int maxSegments) {
+
+		if (maxSegments <= 0) {
+			return 0;
+		}
+		if (maxSegments > MAX_LEVELS) {
+			throw new IllegalArgumentException("A tree can have at most " + MAX_LEVELS + " segments.");
+		}
+		return (1 << maxSegments) - 1;
+
+	}
+
+	/**
+	 * 
+	 * Stores a branch at the given index. Generators place branch i of the tree at
+	 * index i, so that the children of branch i are at 2i + 1 and 2i + 2.
+	 * 
+	 * @param i
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param stroke
+	 * @param depth
+	 */
+	void set(int i, float x1, float y1, float x2, float y2, int stroke, int depth) {
+
+		this.x1.put(i, x1);
+		this.y1.put(i, y1);
+		this.x2.put(i, x2);
+		this.y2.put(i, y2);
+		this.stroke.put(i, stroke);
+		this.depth.put(i, depth);
+
+	}
+
+	/**
+	 * 
+	 * Sets how many of the branches, counted from index 0, have been stored.
+	 * 
+	 * @param size
+	 */
+	void setSize(int size) {
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return x1.capacity();
+	}
+
+	public float x1(int i) {
+		return x1.get(i);
+	}
+
+	public float y1(int i) {
+		return y1.get(i);
+	}
+
+	public float x2(int i) {
+		return x2.get(i);
+	}
+
+	public float y2(int i) {
+		return y2.get(i);
+	}
+
+	public int stroke(int i) {
+		return stroke.get(i);
+	}
+
+	public int depth(int i) {
+		return depth.get(i);
+	}
+
+	/**
+	 * 
+	 * Returns the buffers of values in the order GeometryFile stores them: x1, y1,
+	 * x2, y2, stroke and depth.
+	 * 
+	 * @return
+	 */
+	Buffer[] columns() {
+		return new Buffer[] { x1, y1, x2, y2, stroke, depth };
+	}
+
+}
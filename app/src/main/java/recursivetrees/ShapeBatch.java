@@ -0,0 +1,596 @@
+package recursivetrees;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * This class collects the shapes of a tree into a few paths before they are
+ * drawn. Every time the color, stroke or transform of a Graphics2D changes,
+ * Java2D has to validate its drawing pipeline again before the next shape, and
+ * drawing a tree one branch and one leaf at a time changes them tens of
+ * thousands of times. Instead, branches are added to one path for every stroke
+ * width and leaves and fruit to one path for every color of their palette,
+ * already placed and rotated, and every path is drawn with a single call. The
+ * stroke and color then change only once per path.
+ *
+ * Once MAX_SHAPES shapes are waiting, all of the paths are drawn early, so
+ * they never grow past a fixed size and can be reused from one paint to the
+ * next.
+ *
+ * Drawing the paths lines first and then color by color would not keep the
+ * order the shapes were added in, and where shapes of different colors
+ * overlap, that changes which one ends up on top. So the paths are kept in
+ * ORDER_LEVELS levels, each with a path for every stroke and every color, and
+ * drawn a level at a time, lines first. A shape goes on the lowest level that
+ * is above every waiting shape it overlaps and would otherwise be drawn over
+ * it: a line above every fill, and a fill above every fill of another color.
+ * When it would need a level more than there are, everything waiting is drawn
+ * first. To tell which shapes overlap, the batch keeps a grid of ORDER_CELL
+ * pixel cells over the clip, with the highest level in each cell and what is on
+ * it, and shapes whose boxes cover the same cell count as overlapping.
+ * Rectangles are not kept in order, since they are only used for dots of one
+ * pixel, at most one on every pixel, and always go on the first level.
+ *
+ * Where shapes of a see through color overlap inside one path, the overlap is
+ * only blended once. Java2D also places a lone rectangle or thin line on the
+ * pixel grid a little differently than the same shape in a path, so dots of
+ * collapsed detail can land one pixel over from where they are drawn one at a
+ * time.
+ *
+ * A batch can also draw every shape straight away, the way the tree used to be
+ * drawn, so the two can be compared (see setBatched()). Either way it counts
+ * the state changes and the draw calls it makes.
+ *
+ * Lines are drawn in the line color with the stroke for their width from the
+ * StrokeTable, and rectangles and ovals are filled with a color from the fill
+ * palette. Fills are always made with FILL_STROKE, since Java2D picks a
+ * different way to fill a shape for a wide stroke, so a fill never depends on
+ * the lines drawn before it. The stroke and color of the Graphics2D are put
+ * back the way they were by finish().
+ *
+ * Shapes can be moved and scaled as they are added (see place()), so that
+ * many trees, each drawn at its own place and size, can share one batch. The
+ * width of a line is then scaled as well, and rounded to a whole stroke.
+ *
+ * @author frankdesilets
+ *
+ */
+public class ShapeBatch {
+
+	/*
+	 * The most shapes waiting in all of the paths before they are drawn. An oval
+	 * takes about 100 bytes of path, so this keeps the paths under a megabyte.
+	 */
+	public static final int MAX_SHAPES = 8192;
+
+	/*
+	 * The stroke every fill is made with, the same as the stroke a new Graphics2D
+	 * starts with.
+	 */
+	public static final BasicStroke FILL_STROKE = StrokeTable.get(1);
+
+	/*
+	 * How many pixels across a cell of the grid that keeps the shapes in order is.
+	 */
+	public static final int ORDER_CELL = 4;
+
+	/*
+	 * How many levels of shapes can wait in the batch.
+	 */
+	public static final int ORDER_LEVELS = 8;
+
+	/*
+	 * What the grid holds for a cell whose highest level only has lines.
+	 */
+	private static final int LINE = -1;
+
+	/*
+	 * The paths waiting to be drawn, by level and then by stroke or color.
+	 */
+	private final Path2D.Float[][] linePaths = new Path2D.Float[ORDER_LEVELS][SegmentBuffer.MAX_LEVELS + 1];
+	private final Path2D.Float[][] fillPaths = new Path2D.Float[ORDER_LEVELS][0];
+	private int waiting; // how many shapes are in the paths
+
+	/*
+	 * Working objects for placing ovals and for drawing rectangles one at a time.
+	 */
+	private final Ellipse2D.Float oval = new Ellipse2D.Float();
+	private final AffineTransform ovalTransform = new AffineTransform();
+	private final Rectangle2D.Float rect = new Rectangle2D.Float();
+
+	private boolean batched = true;
+	private Graphics2D g2;
+	private AffineTransform xf; // the transform of g2 when the batch was started
+	private AffineTransform placed; // the transform shapes are drawn with one at a time
+	private float placeX;
+	private float placeY;
+	private float placeScale = 1;
+	private Color lineColor;
+	private Color[] fillColors;
+	private Color currentColor;
+	private Stroke currentStroke;
+	private Color savedColor; // the color of g2 when the batch was started
+	private Stroke savedStroke;
+
+	/*
+	 * The grid that keeps the shapes in order: for every cell, the highest level
+	 * of the shapes waiting in it and their color, which only count if the stamp
+	 * of the cell is the stamp of the paths that are waiting. Drawing the paths
+	 * moves on to a new stamp, which empties every cell at once. The arrays are
+	 * only made once a shape is added.
+	 */
+	private AffineTransform device; // the transform of g2 when the batch was started
+	private int[] cellLevels = new int[0];
+	private int[] cellColors = new int[0];
+	private int[] cellStamps = new int[0];
+	private int stamp;
+	private int cellsX;
+	private int cellsY;
+	private int cellsWide;
+	private int cellsHigh;
+	private int stateChanges;
+	private int drawCalls;
+
+	/**
+	 *
+	 * Starts a batch of shapes for g2. Shapes are added with line(), rect() and
+	 * oval(), and the batch must be finished with finish() before g2 is used for
+	 * anything else.
+	 *
+	 * @param g2
+	 * @param lineColor
+	 * @param fillColors
+	 */
+	public void start(Graphics2D g2, Color lineColor, Color[] fillColors) {
+
+		this.g2 = g2;
+		this.xf = batched ? null : g2.getTransform();
+		this.placed = xf;
+		this.placeX = 0;
+		this.placeY = 0;
+		this.placeScale = 1;
+		this.lineColor = lineColor;
+		this.fillColors = fillColors;
+		this.savedColor = g2.getColor();
+		this.savedStroke = g2.getStroke();
+		this.currentColor = savedColor;
+		this.currentStroke = savedStroke;
+
+		for (int level = 0; level < ORDER_LEVELS; level++) {
+			if (fillPaths[level].length < fillColors.length) {
+				fillPaths[level] = Arrays.copyOf(fillPaths[level], fillColors.length);
+			}
+		}
+		if (batched) {
+			this.startCells();
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that lays the grid of cells over the clip
+	 * of g2, or over the whole device when there is no clip, and empties it.
+	 */
+	private void startCells() {
+
+		this.device = g2.getTransform();
+		Rectangle clip = g2.getClipBounds();
+		Rectangle area = clip == null ? g2.getDeviceConfiguration().getBounds()
+				: device.createTransformedShape(clip).getBounds();
+		this.cellsX = Math.floorDiv(area.x, ORDER_CELL);
+		this.cellsY = Math.floorDiv(area.y, ORDER_CELL);
+		this.cellsWide = Math.max(Math.floorDiv(area.x + area.width - 1, ORDER_CELL) - cellsX + 1, 0);
+		this.cellsHigh = Math.max(Math.floorDiv(area.y + area.height - 1, ORDER_CELL) - cellsY + 1, 0);
+		this.nextStamp();
+
+	}
+
+	/**
+	 *
+	 * Moves the shapes added from now on by x and y and scales them by scale, as
+	 * if g2 was translated and then scaled.
+	 *
+	 * @param x
+	 * @param y
+	 * @param scale
+	 */
+	public void place(float x, float y, float scale) {
+
+		this.placeX = x;
+		this.placeY = y;
+		this.placeScale = scale;
+		if (!batched) {
+			g2.setTransform(xf);
+			g2.translate(x, y);
+			g2.scale(scale, scale);
+			this.placed = g2.getTransform();
+			this.stateChanges++;
+		}
+
+	}
+
+	/**
+	 *
+	 * Adds a line from x1, y1 to x2, y2 drawn with the given stroke width. The
+	 * ends are rounded down to whole units, like Graphics.drawLine() does.
+	 *
+	 * @param stroke
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 */
+	public void line(int stroke, float x1, float y1, float x2, float y2) {
+
+		int width = placeScale == 1 ? stroke : Math.round(stroke * placeScale);
+		if (!batched || width < 0 || width > SegmentBuffer.MAX_LEVELS) {
+			this.useColor(lineColor);
+			this.useStroke(StrokeTable.get(stroke));
+			g2.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+			this.drawCalls++;
+			return;
+		}
+
+		float startX = placeX + (int) x1 * placeScale;
+		float startY = placeY + (int) y1 * placeScale;
+		float endX = placeX + (int) x2 * placeScale;
+		float endY = placeY + (int) y2 * placeScale;
+		float reach = width / 2f;
+		int level = this.keepOrder(LINE, Math.min(startX, endX) - reach, Math.min(startY, endY) - reach,
+				Math.max(startX, endX) + reach, Math.max(startY, endY) + reach);
+		Path2D.Float path = this.linePath(level, width);
+		path.moveTo(startX, startY);
+		path.lineTo(endX, endY);
+		this.added();
+
+	}
+
+	/**
+	 *
+	 * Adds a rectangle filled with the given color of the palette.
+	 *
+	 * @param color
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public void rect(int color, float x, float y, float width, float height) {
+
+		if (!batched) {
+			this.useColor(fillColors[color]);
+			this.useStroke(FILL_STROKE);
+			rect.setRect(x, y, width, height);
+			g2.fill(rect);
+			this.drawCalls++;
+			return;
+		}
+
+		float left = placeX + x * placeScale;
+		float top = placeY + y * placeScale;
+		float right = left + width * placeScale;
+		float bottom = top + height * placeScale;
+		Path2D.Float path = this.fillPath(0, color);
+		path.moveTo(left, top);
+		path.lineTo(right, top);
+		path.lineTo(right, bottom);
+		path.lineTo(left, bottom);
+		path.closePath();
+		this.added();
+
+	}
+
+	/**
+	 *
+	 * Adds an oval filled with the given color of the palette. The oval is width
+	 * by height units with its corner at x and y, and is turned by rotation
+	 * radians around that corner, the same as translating and rotating g2 and
+	 * calling fillOval(0, 0, width, height).
+	 *
+	 * @param color
+	 * @param x
+	 * @param y
+	 * @param rotation
+	 * @param width
+	 * @param height
+	 */
+	public void oval(int color, float x, float y, float rotation, int width, int height) {
+
+		if (!batched) {
+			g2.translate(x, y);
+			g2.rotate(rotation);
+			this.useColor(fillColors[color]);
+			this.useStroke(FILL_STROKE);
+			g2.fillOval(0, 0, width, height);
+			g2.setTransform(placed);
+			this.stateChanges += 3;
+			this.drawCalls++;
+			return;
+		}
+
+		ovalTransform.setToTranslation(placeX + x * placeScale, placeY + y * placeScale);
+		ovalTransform.scale(placeScale, placeScale);
+		ovalTransform.rotate(rotation);
+		oval.setFrame(0, 0, width, height);
+
+		/*
+		 * The box of the oval is the box of the corners of its frame, turned.
+		 */
+		double ax = ovalTransform.getScaleX() * width;
+		double ay = ovalTransform.getShearY() * width;
+		double bx = ovalTransform.getShearX() * height;
+		double by = ovalTransform.getScaleY() * height;
+		double ox = ovalTransform.getTranslateX();
+		double oy = ovalTransform.getTranslateY();
+		int level = this.keepOrder(color, (float) (ox + Math.min(ax, 0) + Math.min(bx, 0)),
+				(float) (oy + Math.min(ay, 0) + Math.min(by, 0)), (float) (ox + Math.max(ax, 0) + Math.max(bx, 0)),
+				(float) (oy + Math.max(ay, 0) + Math.max(by, 0)));
+		this.fillPath(level, color).append(oval.getPathIterator(ovalTransform), false);
+		this.added();
+
+	}
+
+	/**
+	 *
+	 * Draws everything that is left in the batch, lines first, and puts the
+	 * stroke, color and transform of g2 back the way they were.
+	 */
+	public void finish() {
+
+		this.drawPaths();
+		if (placed != xf) {
+			g2.setTransform(xf);
+			this.stateChanges++;
+		}
+		this.useStroke(savedStroke);
+		this.useColor(savedColor);
+		this.g2 = null;
+		this.xf = null;
+		this.placed = null;
+
+	}
+
+	/**
+	 *
+	 * Sets whether shapes are collected into paths, which they are by default, or
+	 * drawn one at a time as they are added.
+	 *
+	 * @param batched
+	 */
+	public void setBatched(boolean batched) {
+		this.batched = batched;
+	}
+
+	public boolean isBatched() {
+		return batched;
+	}
+
+	/**
+	 *
+	 * Sets the counts of state changes and draw calls back to 0.
+	 */
+	public void resetCounts() {
+
+		this.stateChanges = 0;
+		this.drawCalls = 0;
+
+	}
+
+	/**
+	 *
+	 * Returns how many times the color, stroke or transform of a Graphics2D was
+	 * changed since resetCounts(). Each change makes Java2D validate its pipeline
+	 * again before the next shape is drawn.
+	 *
+	 * @return
+	 */
+	public int getStateChanges() {
+		return stateChanges;
+	}
+
+	/**
+	 *
+	 * Returns how many shapes and paths were drawn since resetCounts().
+	 *
+	 * @return
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	/**
+	 *
+	 * This is a private helper method that draws every path that has shapes in it
+	 * and empties it, a level at a time, lines first.
+	 */
+	private void drawPaths() {
+
+		for (int level = 0; level < ORDER_LEVELS; level++) {
+			for (int stroke = 0; stroke <= SegmentBuffer.MAX_LEVELS; stroke++) {
+				Path2D.Float path = linePaths[level][stroke];
+				if (path != null && path.getCurrentPoint() != null) {
+					this.useColor(lineColor);
+					this.useStroke(StrokeTable.get(stroke));
+					g2.draw(path);
+					this.drawCalls++;
+					path.reset();
+				}
+			}
+			for (int color = 0; color < fillColors.length; color++) {
+				Path2D.Float path = fillPaths[level][color];
+				if (path != null && path.getCurrentPoint() != null) {
+					this.useColor(fillColors[color]);
+					this.useStroke(FILL_STROKE);
+					g2.fill(path);
+					this.drawCalls++;
+					path.reset();
+				}
+			}
+		}
+		this.waiting = 0;
+		this.nextStamp();
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns the level a shape with the box
+	 * from left, top to right, bottom goes on, and marks the cells of the box with
+	 * it. color is the fill color of the shape, or LINE for a line. If there is no
+	 * such level, everything waiting is drawn first and the shape goes on the
+	 * first level.
+	 *
+	 * @param color
+	 * @param left
+	 * @param top
+	 * @param right
+	 * @param bottom
+	 * @return
+	 */
+	private int keepOrder(int color, float left, float top, float right, float bottom) {
+
+		/*
+		 * The box is moved into the pixels of the device, and from there into cells.
+		 * A pixel is filled when its center is inside the shape, but a line can touch
+		 * the pixels next to it. Parts outside the clip cannot be seen, so they need
+		 * no order.
+		 */
+		double m00 = device.getScaleX();
+		double m01 = device.getShearX();
+		double m10 = device.getShearY();
+		double m11 = device.getScaleY();
+		double minX = device.getTranslateX() + Math.min(m00 * left, m00 * right) + Math.min(m01 * top, m01 * bottom);
+		double maxX = device.getTranslateX() + Math.max(m00 * left, m00 * right) + Math.max(m01 * top, m01 * bottom);
+		double minY = device.getTranslateY() + Math.min(m10 * left, m10 * right) + Math.min(m11 * top, m11 * bottom);
+		double maxY = device.getTranslateY() + Math.max(m10 * left, m10 * right) + Math.max(m11 * top, m11 * bottom);
+		if (color == LINE) {
+			minX--;
+			minY--;
+			maxX++;
+			maxY++;
+		}
+		int firstColumn = Math.max(Math.floorDiv((int) Math.ceil(minX - 0.5), ORDER_CELL) - cellsX, 0);
+		int lastColumn = Math.min(Math.floorDiv((int) Math.ceil(maxX - 0.5) - 1, ORDER_CELL) - cellsX, cellsWide - 1);
+		int firstRow = Math.max(Math.floorDiv((int) Math.ceil(minY - 0.5), ORDER_CELL) - cellsY, 0);
+		int lastRow = Math.min(Math.floorDiv((int) Math.ceil(maxY - 0.5) - 1, ORDER_CELL) - cellsY, cellsHigh - 1);
+		if (firstColumn > lastColumn || firstRow > lastRow) {
+			return 0;
+		}
+		if (cellStamps.length < cellsWide * cellsHigh) {
+			this.cellLevels = new int[cellsWide * cellsHigh];
+			this.cellColors = new int[cellsWide * cellsHigh];
+			this.cellStamps = new int[cellsWide * cellsHigh];
+		}
+
+		/*
+		 * The highest level of a cell has either only lines, or lines and then fills
+		 * of one color, and everything else in the cell is on lower levels. A shape
+		 * can go on that level if it is drawn over everything there anyway: a fill
+		 * over lines, or over fills of its own color, or a line over lines.
+		 */
+		int level = 0;
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int cell = row * cellsWide + firstColumn; cell <= row * cellsWide + lastColumn; cell++) {
+				if (cellStamps[cell] == stamp) {
+					boolean over = cellColors[cell] == color || (cellColors[cell] == LINE && color != LINE);
+					level = Math.max(level, over ? cellLevels[cell] : cellLevels[cell] + 1);
+				}
+			}
+		}
+		if (level == ORDER_LEVELS) {
+			this.drawPaths();
+			level = 0;
+		}
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int cell = row * cellsWide + firstColumn; cell <= row * cellsWide + lastColumn; cell++) {
+				cellStamps[cell] = stamp;
+				cellLevels[cell] = level;
+				cellColors[cell] = color;
+			}
+		}
+		return level;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that moves on to a new stamp, which empties
+	 * every cell of the grid. When the stamps run out, they start again from 1.
+	 */
+	private void nextStamp() {
+
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(cellStamps, 0);
+			this.stamp = 0;
+		}
+		this.stamp++;
+
+	}
+
+	private void added() {
+
+		if (++waiting == MAX_SHAPES) {
+			this.drawPaths();
+		}
+
+	}
+
+	private Path2D.Float linePath(int level, int stroke) {
+
+		if (linePaths[level][stroke] == null) {
+			linePaths[level][stroke] = new Path2D.Float(Path2D.WIND_NON_ZERO);
+		}
+		return linePaths[level][stroke];
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns the path for a color on a
+	 * level, making it the first time it is used. Shapes in the path are filled
+	 * where any of them are, even where they overlap.
+	 *
+	 * @param level
+	 * @param color
+	 * @return
+	 */
+	private Path2D.Float fillPath(int level, int color) {
+
+		if (fillPaths[level][color] == null) {
+			fillPaths[level][color] = new Path2D.Float(Path2D.WIND_NON_ZERO);
+		}
+		return fillPaths[level][color];
+
+	}
+
+	private void useColor(Color color) {
+
+		if (!color.equals(currentColor)) {
+			this.currentColor = color;
+			g2.setColor(color);
+			this.stateChanges++;
+		}
+
+	}
+
+	private void useStroke(Stroke stroke) {
+
+		if (!stroke.equals(currentStroke)) {
+			this.currentStroke = stroke;
+			g2.setStroke(stroke);
+			this.stateChanges++;
+		}
+
+	}
+
+}
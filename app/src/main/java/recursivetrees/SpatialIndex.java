@@ -0,0 +1,427 @@
+package recursivetrees;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * This class sorts the branches, leaves and fruit of a TreeGeometry into a
+ * uniform grid, so that the parts inside a small area can be found without
+ * looking at the whole tree. The canvas uses it when it is zoomed in, to only
+ * draw what can be seen.
+ *
+ * Every cell of the grid has a list of the indexes that fall in it. The lists
+ * of all cells are kept one after the other in a single int array, with a
+ * second array holding where the list of each cell starts, so the index is
+ * made of a few arrays no matter how many cells there are. A branch is added to
+ * every cell its bounding box touches. A leaf or fruit is only added to the
+ * cell it is placed in, and the area asked for is grown by LEAF_REACH instead,
+ * since an oval reaches at most that far from where it is placed.
+ *
+ * When a tree only gets new fruit and colors, the index of the earlier tree can
+ * be handed to the constructor, and the grid and the lists of the branches and
+ * leaves are shared with it instead of being built again.
+ *
+ * Once built, an index is not changed, but select() reuses the same Selection
+ * every time, so it must only be called from one thread.
+ *
+ * @author frankdesilets
+ *
+ */
+public class SpatialIndex {
+
+	/*
+	 * How far a leaf or fruit oval can reach from the point it is placed at. A leaf
+	 * is 5 by 10 pixels, so no part of it is more than about 11.2 pixels away.
+	 */
+	public static final int LEAF_REACH = 12;
+
+	/*
+	 * The grid has about one cell for this many parts of the tree, but at most
+	 * MAX_CELLS_PER_SIDE cells across and down.
+	 */
+	private static final int PARTS_PER_CELL = 8;
+	private static final int MAX_CELLS_PER_SIDE = 1024;
+
+	private final TreeGeometry geometry;
+	private final float minX;
+	private final float minY;
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+
+	private final int[] branchStart;
+	private final int[] branchItems;
+	private final int[] leafStart;
+	private final int[] leafItems;
+	private final int[] fruitStart;
+	private final int[] fruitItems;
+
+	private final Selection selection;
+
+	/**
+	 *
+	 * Builds the index for a tree. This looks at every part of the tree twice, so
+	 * it is only done when a zoomed view needs it (see TreeFrame.getIndex()).
+	 *
+	 * @param geometry
+	 */
+	public SpatialIndex(TreeGeometry geometry) {
+
+		this(geometry, null);
+
+	}
+
+	/**
+	 *
+	 * Builds the index for a tree, sharing everything but the fruit with the index
+	 * of an earlier tree if both trees have the same branch and leaf buffers. A
+	 * fruit always grows where leaves are, so it falls inside the grid of the
+	 * earlier tree. If the buffers are not the same, or earlier is null, the whole
+	 * index is built.
+	 *
+	 * @param geometry
+	 * @param earlier
+	 */
+	public SpatialIndex(TreeGeometry geometry, SpatialIndex earlier) {
+
+		this.geometry = geometry;
+		SegmentBuffer branches = geometry.getBranches();
+		LeafBuffer leaves = geometry.getLeaves();
+		LeafBuffer fruit = geometry.getFruit();
+
+		if (earlier != null && earlier.geometry.getBranches() == branches
+				&& earlier.geometry.getLeaves() == leaves) {
+
+			this.minX = earlier.minX;
+			this.minY = earlier.minY;
+			this.cellSize = earlier.cellSize;
+			this.columns = earlier.columns;
+			this.rows = earlier.rows;
+			this.branchStart = earlier.branchStart;
+			this.branchItems = earlier.branchItems;
+			this.leafStart = earlier.leafStart;
+			this.leafItems = earlier.leafItems;
+			this.fruitStart = new int[columns * rows + 1];
+			this.fruitItems = this.pointItems(fruit, fruitStart);
+			this.selection = new Selection(branches.size(), leaves.size(), fruit.size());
+			return;
+
+		}
+
+		/*
+		 * The grid covers the bounding box of all the branches and ovals.
+		 */
+		float left = Float.MAX_VALUE;
+		float top = Float.MAX_VALUE;
+		float right = -Float.MAX_VALUE;
+		float bottom = -Float.MAX_VALUE;
+		for (int i = 0; i < branches.size(); i++) {
+			left = Math.min(left, Math.min(branches.x1(i), branches.x2(i)));
+			top = Math.min(top, Math.min(branches.y1(i), branches.y2(i)));
+			right = Math.max(right, Math.max(branches.x1(i), branches.x2(i)));
+			bottom = Math.max(bottom, Math.max(branches.y1(i), branches.y2(i)));
+		}
+		for (LeafBuffer ovals : new LeafBuffer[] { leaves, fruit }) {
+			for (int i = 0; i < ovals.size(); i++) {
+				left = Math.min(left, ovals.x(i));
+				top = Math.min(top, ovals.y(i));
+				right = Math.max(right, ovals.x(i));
+				bottom = Math.max(bottom, ovals.y(i));
+			}
+		}
+		if (left > right) {
+			left = top = right = bottom = 0; // an empty tree
+		}
+
+		/*
+		 * The cells are square, and sized so that there is roughly one cell for every
+		 * few parts of the tree.
+		 */
+		long parts = (long) branches.size() + leaves.size() + fruit.size();
+		double area = Math.max((double) (right - left + 1) * (bottom - top + 1), 1);
+		double cells = Math.max(parts / PARTS_PER_CELL, 1);
+		float size = (float) Math.sqrt(area / cells);
+		size = Math.max(size, (right - left + 1) / MAX_CELLS_PER_SIDE);
+		size = Math.max(size, (bottom - top + 1) / MAX_CELLS_PER_SIDE);
+		this.cellSize = Math.max(size, 1);
+		this.minX = left;
+		this.minY = top;
+		this.columns = (int) ((right - left) / cellSize) + 1;
+		this.rows = (int) ((bottom - top) / cellSize) + 1;
+
+		/*
+		 * Each list is built in two passes: the first counts how many indexes go in
+		 * every cell, which gives where every cell starts, and the second fills them
+		 * in.
+		 */
+		this.branchStart = new int[columns * rows + 1];
+		this.addBranches(branches, branchStart, null);
+		SpatialIndex.startsFromCounts(branchStart);
+		this.branchItems = new int[branchStart[columns * rows]];
+		this.addBranches(branches, branchStart.clone(), branchItems);
+
+		this.leafStart = new int[columns * rows + 1];
+		this.leafItems = this.pointItems(leaves, leafStart);
+		this.fruitStart = new int[columns * rows + 1];
+		this.fruitItems = this.pointItems(fruit, fruitStart);
+
+		this.selection = new Selection(branches.size(), leaves.size(), fruit.size());
+
+	}
+
+	/**
+	 *
+	 * Marks every branch, leaf and fruit that may be inside the area, and returns
+	 * the marks. Parts just outside the area can be marked too, since whole cells
+	 * are looked at. The returned Selection is reused by the next call.
+	 *
+	 * @param area
+	 * @return
+	 */
+	public Selection select(Rectangle area) {
+
+		selection.clear();
+
+		int c1 = this.column(area.x);
+		int c2 = this.column(area.x + area.width);
+		int r1 = this.row(area.y);
+		int r2 = this.row(area.y + area.height);
+		SpatialIndex.mark(selection.branches, branchStart, branchItems, columns, c1, c2, r1, r2);
+
+		c1 = this.column(area.x - LEAF_REACH);
+		c2 = this.column(area.x + area.width + LEAF_REACH);
+		r1 = this.row(area.y - LEAF_REACH);
+		r2 = this.row(area.y + area.height + LEAF_REACH);
+		SpatialIndex.mark(selection.leaves, leafStart, leafItems, columns, c1, c2, r1, r2);
+		SpatialIndex.mark(selection.fruit, fruitStart, fruitItems, columns, c1, c2, r1, r2);
+
+		return selection;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that adds every branch to the cells its
+	 * bounding box touches, grown by half of its stroke.
+	 *
+	 * @param branches
+	 * @param next
+	 * @param items
+	 */
+	private void addBranches(SegmentBuffer branches, int[] next, int[] items) {
+
+		for (int i = 0; i < branches.size(); i++) {
+
+			float reach = branches.stroke(i) / 2f + 1;
+			int c1 = this.column(Math.min(branches.x1(i), branches.x2(i)) - reach);
+			int c2 = this.column(Math.max(branches.x1(i), branches.x2(i)) + reach);
+			int r1 = this.row(Math.min(branches.y1(i), branches.y2(i)) - reach);
+			int r2 = this.row(Math.max(branches.y1(i), branches.y2(i)) + reach);
+			for (int r = r1; r <= r2; r++) {
+				for (int c = c1; c <= c2; c++) {
+					SpatialIndex.add(next, items, r * columns + c, i);
+				}
+			}
+
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that builds the lists for leaves or fruit,
+	 * which go in the one cell they are placed in.
+	 *
+	 * @param ovals
+	 * @param start
+	 * @return
+	 */
+	private int[] pointItems(LeafBuffer ovals, int[] start) {
+
+		for (int i = 0; i < ovals.size(); i++) {
+			start[this.row(ovals.y(i)) * columns + this.column(ovals.x(i))]++;
+		}
+		SpatialIndex.startsFromCounts(start);
+
+		int[] items = new int[start[start.length - 1]];
+		int[] next = start.clone();
+		for (int i = 0; i < ovals.size(); i++) {
+			SpatialIndex.add(next, items, this.row(ovals.y(i)) * columns + this.column(ovals.x(i)), i);
+		}
+		return items;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that counts an index for a cell while items
+	 * is null, and otherwise stores it at the next free place of the cell.
+	 *
+	 * @param next
+	 * @param items
+	 * @param cell
+	 * @param index
+	 */
+	private static void add(int[] next, int[] items, int cell, int index) {
+
+		if (items == null) {
+			next[cell]++;
+		} else {
+			items[next[cell]++] = index;
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that turns the count of every cell into
+	 * where its list starts. The extra last entry becomes the total.
+	 *
+	 * @param start
+	 */
+	private static void startsFromCounts(int[] start) {
+
+		int total = 0;
+		for (int cell = 0; cell < start.length; cell++) {
+			int count = start[cell];
+			start[cell] = total;
+			total += count;
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that sets the bit of every index listed in
+	 * the given range of cells.
+	 *
+	 * @param bits
+	 * @param start
+	 * @param items
+	 * @param columns
+	 * @param c1
+	 * @param c2
+	 * @param r1
+	 * @param r2
+	 */
+	private static void mark(long[] bits, int[] start, int[] items, int columns, int c1, int c2, int r1, int r2) {
+
+		for (int r = r1; r <= r2; r++) {
+			for (int k = start[r * columns + c1]; k < start[r * columns + c2 + 1]; k++) {
+				int index = items[k];
+				bits[index >>> 6] |= 1L << index;
+			}
+		}
+
+	}
+
+	private int column(float x) {
+		return Math.min(Math.max((int) ((x - minX) / cellSize), 0), columns - 1);
+	}
+
+	private int row(float y) {
+		return Math.min(Math.max((int) ((y - minY) / cellSize), 0), rows - 1);
+	}
+
+	public TreeGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 *
+	 * Returns about how many bytes the index takes: its lists, and the bits of its
+	 * Selection. Lists shared with an earlier index are counted as well.
+	 *
+	 * @return
+	 */
+	public long getBytes() {
+
+		long parts = geometry.getBranches().capacity() + geometry.getLeaves().capacity()
+				+ geometry.getFruit().capacity();
+		return 4L * (branchStart.length + branchItems.length + leafStart.length + leafItems.length
+				+ fruitStart.length + fruitItems.length) + parts / 8;
+
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 *
+	 * The result of select(): one bit for every branch, leaf and fruit, set when
+	 * it may be visible. Going through the set bits in order visits the parts in
+	 * the same order as they are stored, so they are drawn in the same order as
+	 * when the whole tree is painted.
+	 *
+	 */
+	public static class Selection {
+
+		private final long[] branches;
+		private final long[] leaves;
+		private final long[] fruit;
+
+		private Selection(int branchCount, int leafCount, int fruitCount) {
+
+			this.branches = new long[(branchCount + 63) >>> 6];
+			this.leaves = new long[(leafCount + 63) >>> 6];
+			this.fruit = new long[(fruitCount + 63) >>> 6];
+
+		}
+
+		private void clear() {
+
+			Arrays.fill(branches, 0);
+			Arrays.fill(leaves, 0);
+			Arrays.fill(fruit, 0);
+
+		}
+
+		/**
+		 *
+		 * Returns the first selected branch at or after index i, or -1 if there is
+		 * none. The same goes for nextLeaf() and nextFruit().
+		 *
+		 * @param i
+		 * @return
+		 */
+		public int nextBranch(int i) {
+			return Selection.nextSetBit(branches, i);
+		}
+
+		public int nextLeaf(int i) {
+			return Selection.nextSetBit(leaves, i);
+		}
+
+		public int nextFruit(int i) {
+			return Selection.nextSetBit(fruit, i);
+		}
+
+		private static int nextSetBit(long[] bits, int i) {
+
+			int word = i >>> 6;
+			if (word >= bits.length) {
+				return -1;
+			}
+			long remaining = bits[word] & (-1L << i);
+			while (remaining == 0) {
+				if (++word == bits.length) {
+					return -1;
+				}
+				remaining = bits[word];
+			}
+			return (word << 6) + Long.numberOfTrailingZeros(remaining);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,41 @@
+package recursivetrees;
+
+import java.awt.BasicStroke;
+
+/**
+ * This class holds one BasicStroke for every stroke width a branch can have, so
+ * drawing a tree never has to create a new stroke. The width of a branch is at
+ * most the amount of segments minus one, so a stroke is made for every width
+ * up to SegmentBuffer.MAX_LEVELS.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class StrokeTable {
+
+	private static final BasicStroke[] STROKES = new BasicStroke[SegmentBuffer.MAX_LEVELS + 1];
+
+	static {
+		for (int width = 0; width < STROKES.length; width++) {
+			STROKES[width] = new BasicStroke(width);
+		}
+	}
+
+	/**
+	 * 
+	 * Returns the stroke for the given width. Widths outside of the table get a new
+	 * stroke, which does not happen for generated trees.
+	 * 
+	 * @param width
+	 * @return
+	 */
+	public static BasicStroke get(int width) {
+
+		if (width >= 0 && width < STROKES.length) {
+			return STROKES[width];
+		}
+		return new BasicStroke(width);
+
+	}
+
+}
@@ -0,0 +1,320 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * This class writes a Tree as an SVG file. The branches, leaves and fruit are
+ * written to the file as they are generated, so the document is never held in
+ * memory and even trees with millions of branches can be exported.
+ *
+ * SVG draws elements in the order they appear, and on the canvas all branches
+ * are drawn before the leaves and the fruit. To keep that order without storing
+ * anything, the tree is generated three times with the same seed: once for the
+ * branches, once for the leaves and once for the fruit. Each time only the part
+ * being written is kept and the rest is thrown away.
+ *
+ * Lines use the same square caps as the strokes on the canvas, and a stroke
+ * width of 0 is written as 1, since Java draws those as thin lines as well.
+ *
+ * @author frankdesilets
+ *
+ */
+public class SvgExporter {
+
+	/*
+	 * The parts of the tree, in the order they are written.
+	 */
+	private static final int BRANCHES = 0;
+	private static final int LEAVES = 1;
+	private static final int FRUIT = 2;
+
+	private final Tree tree;
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+
+	/**
+	 *
+	 * Creates an exporter for a copy of the tree planted at x and y, on a page of
+	 * the given size.
+	 *
+	 * @param tree
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public SvgExporter(Tree tree, int x, int y, int width, int height) {
+
+		this.tree = new Tree(tree);
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+
+	}
+
+	/**
+	 *
+	 * Writes the tree to a file, replacing it if it exists. The file is written
+	 * to its PartFile first, so a file that was there before is only replaced
+	 * once the new one is complete.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+
+		Path part = PartFile.of(file);
+		try {
+			try (BufferedWriter out = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+				this.write(out);
+			}
+			PartFile.moveIntoPlace(part, file);
+		} catch (IOException | RuntimeException e) {
+			PartFile.delete(part, e);
+			throw e;
+		}
+
+	}
+
+	/**
+	 *
+	 * Writes the tree to a channel, for example a socket or a FileChannel. The
+	 * channel is not closed.
+	 *
+	 * @param channel
+	 * @throws IOException
+	 */
+	public void write(WritableByteChannel channel) throws IOException {
+
+		BufferedWriter out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+		this.write(out);
+		out.flush();
+
+	}
+
+	/**
+	 *
+	 * Writes the tree to a Writer. The writer should be buffered, since every
+	 * element is written in several small pieces. It is not closed.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(Writer out) throws IOException {
+
+		TreeGenerator generator = new TreeGenerator(tree);
+
+		try {
+
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+					+ "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+
+			/*
+			 * The first pass writes the style sheet once the palettes are known, and opens
+			 * the group of branches. The other two passes only write their own part.
+			 */
+			generator.generate(x, y, new PartWriter(out, BRANCHES));
+			out.write("</g>\n<g id=\"leaves\">\n");
+			generator.generate(x, y, new PartWriter(out, LEAVES));
+			out.write("</g>\n<g id=\"fruit\">\n");
+			generator.generate(x, y, new PartWriter(out, FRUIT));
+			out.write("</g>\n</svg>\n");
+
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that writes a CSS color with its alpha.
+	 *
+	 * @param out
+	 * @param color
+	 * @throws IOException
+	 */
+	private static void writeColor(Writer out, Color color) throws IOException {
+
+		out.write("rgba(");
+		out.write(Integer.toString(color.getRed()));
+		out.write(',');
+		out.write(Integer.toString(color.getGreen()));
+		out.write(',');
+		out.write(Integer.toString(color.getBlue()));
+		out.write(',');
+		out.write(Double.toString(Math.round(color.getAlpha() / 255.0 * 1000) / 1000.0));
+		out.write(')');
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that writes a rotation in degrees, rounded
+	 * to two decimals, which is far below a pixel for a leaf.
+	 *
+	 * @param out
+	 * @param rotation
+	 * @throws IOException
+	 */
+	private static void writeDegrees(Writer out, float rotation) throws IOException {
+		out.write(Double.toString(Math.round(Math.toDegrees(rotation) * 100) / 100.0));
+	}
+
+	/**
+	 *
+	 * A TreeSink that writes one part of the tree as SVG elements and ignores the
+	 * others. Leaves and fruit get a class for their palette color, so the color
+	 * is written only once in the style sheet.
+	 *
+	 */
+	private static class PartWriter implements TreeSink {
+
+		private final Writer out;
+		private final int part;
+
+		PartWriter(Writer out, int part) {
+			this.out = out;
+			this.part = part;
+		}
+
+		@Override
+		public void start(Color branchColor, Color[] leafPalette, Color[] fruitPalette) {
+
+			if (part != BRANCHES) {
+				return;
+			}
+
+			try {
+
+				out.write("<style>\n");
+				out.write("#branches line{stroke-linecap:square;stroke:");
+				SvgExporter.writeColor(out, branchColor);
+				out.write("}\n");
+				for (int width = 0; width <= SegmentBuffer.MAX_LEVELS; width++) {
+					out.write(".b" + width + "{stroke-width:" + Math.max(width, 1) + "}\n");
+				}
+				for (int i = 0; i < leafPalette.length; i++) {
+					out.write(".l" + i + "{fill:");
+					SvgExporter.writeColor(out, leafPalette[i]);
+					out.write("}\n");
+				}
+				for (int i = 0; i < fruitPalette.length; i++) {
+					out.write(".f" + i + "{fill:");
+					SvgExporter.writeColor(out, fruitPalette[i]);
+					out.write("}\n");
+				}
+				out.write("</style>\n<g id=\"branches\">\n");
+
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+		}
+
+		@Override
+		public void branch(int i, int x1, int y1, int x2, int y2, int stroke, int depth) {
+
+			if (part != BRANCHES) {
+				return;
+			}
+
+			try {
+
+				out.write("<line class=\"b");
+				out.write(Integer.toString(stroke));
+				out.write("\" x1=\"");
+				out.write(Integer.toString(x1));
+				out.write("\" y1=\"");
+				out.write(Integer.toString(y1));
+				out.write("\" x2=\"");
+				out.write(Integer.toString(x2));
+				out.write("\" y2=\"");
+				out.write(Integer.toString(y2));
+				out.write("\"/>\n");
+
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+		}
+
+		@Override
+		public void leaf(int slot, int x, int y, float rotation, int color) {
+
+			if (part != LEAVES) {
+				return;
+			}
+
+			/*
+			 * On the canvas a leaf is an oval 5 wide and 10 high with its corner at the
+			 * origin, so the ellipse is centered at 2.5, 5.
+			 */
+			try {
+				this.writeTransformed("<ellipse class=\"l", color, x, y, rotation);
+				out.write(" cx=\"2.5\" cy=\"5\" rx=\"2.5\" ry=\"5\"/>\n");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+		}
+
+		@Override
+		public void fruit(int slot, int x, int y, float rotation, int color) {
+
+			if (part != FRUIT) {
+				return;
+			}
+
+			try {
+				this.writeTransformed("<circle class=\"f", color, x, y, rotation);
+				out.write(" cx=\"2.5\" cy=\"2.5\" r=\"2.5\"/>\n");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+		}
+
+		/**
+		 *
+		 * This is a private helper method that writes the start of a leaf or fruit
+		 * element up to and including its transform.
+		 *
+		 * @param element
+		 * @param color
+		 * @param x
+		 * @param y
+		 * @param rotation
+		 * @throws IOException
+		 */
+		private void writeTransformed(String element, int color, int x, int y, float rotation)
+				throws IOException {
+
+			out.write(element);
+			out.write(Integer.toString(color));
+			out.write("\" transform=\"translate(");
+			out.write(Integer.toString(x));
+			out.write(' ');
+			out.write(Integer.toString(y));
+			out.write(") rotate(");
+			SvgExporter.writeDegrees(out, rotation);
+			out.write(")\"");
+
+		}
+
+	}
+
+}
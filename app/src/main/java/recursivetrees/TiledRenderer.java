@@ -0,0 +1,346 @@
+package recursivetrees;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class paints a tree into a PNG that can be far larger than the heap,
+ * such as a 16384 x 16384 poster. The image is cut into square tiles of
+ * tileSize pixels, and a row of tiles, a strip, is painted at a time with every
+ * tile on its own thread and its own Graphics2D. Once a strip is done, it is
+ * written to the file by a PngStripWriter and its tiles are cleared and used
+ * for a later strip.
+ *
+ * Only two strips are held at once: the next strip is painted while the one
+ * before it is written. The memory needed is therefore two strips, 8 *
+ * tileSize bytes for every pixel of width, plus the bounding boxes of the tree,
+ * no matter how high the image is.
+ *
+ * Every thread paints through a LevelOfDetail of its own, since a
+ * LevelOfDetail can only paint from one thread at a time, but they all share
+ * the same bounding boxes. The clip of each tile is its own square, so a tile
+ * only looks at the branches whose box reaches into it, and the leaves and
+ * fruit growing from them, and a tile that the tree does not reach is not
+ * painted at all.
+ *
+ * Tiles are painted with the same rules as one large image, so the tiles meet
+ * without seams. Where branches and leaves overlap, the order they are drawn
+ * in can differ a little from one large image, since every tile draws its
+ * paths on its own (see ShapeBatch).
+ *
+ * @author frankdesilets
+ *
+ */
+public class TiledRenderer {
+
+	public static final int DEFAULT_TILE_SIZE = 512;
+
+	private final TreeGeometry geometry;
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final LevelOfDetail painter; // holds the bounding boxes the other painters share
+	private AffineTransform view = new AffineTransform();
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/*
+	 * Counts of the last write(), for checking how much work the tiles saved.
+	 */
+	private int tilesPainted;
+	private int tilesSkipped;
+
+	/**
+	 *
+	 * Creates a renderer for an image of width x height pixels, cut into tiles of
+	 * tileSize x tileSize. Works out the bounding boxes of the tree, which is done
+	 * on the calling thread.
+	 *
+	 * @param geometry
+	 * @param width
+	 * @param height
+	 * @param tileSize
+	 */
+	public TiledRenderer(TreeGeometry geometry, int width, int height, int tileSize) {
+
+		if (width <= 0 || height <= 0 || tileSize <= 0) {
+			throw new IllegalArgumentException(
+					"The image and tiles must be at least 1 x 1, not " + width + " x " + height + " and " + tileSize);
+		}
+		this.geometry = geometry;
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.painter = new LevelOfDetail(geometry);
+
+	}
+
+	/**
+	 *
+	 * Paints the tree and writes it to a PNG file, replacing it if it exists.
+	 * Returns once the whole file is written. The file is only replaced once
+	 * every row is painted, so if painting or writing fails, the file that was
+	 * there is kept and nothing is left half written (see PngStripWriter).
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+
+		int columns = (width + tileSize - 1) / tileSize;
+		int rows = (height + tileSize - 1) / tileSize;
+		this.tilesPainted = 0;
+		this.tilesSkipped = 0;
+
+		/*
+		 * The painters are handed from tile to tile, so no two threads use one at
+		 * the same time.
+		 */
+		int threadCount = Math.max(Math.min(threads, columns * 2), 1);
+		BlockingQueue<LevelOfDetail> painters = new ArrayBlockingQueue<LevelOfDetail>(threadCount);
+		painters.add(painter);
+		for (int i = 1; i < threadCount; i++) {
+			painters.add(new LevelOfDetail(geometry, painter));
+		}
+
+		/*
+		 * Two strips of tiles, painted and written in turns.
+		 */
+		BufferedImage[][] strips = new BufferedImage[2][columns];
+		for (int s = 0; s < 2; s++) {
+			for (int column = 0; column < columns; column++) {
+				strips[s][column] = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+			}
+		}
+		int[] line = new int[width];
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try (PngStripWriter writer = new PngStripWriter(file, width, height)) {
+
+			List<Future<Boolean>> painting = this.paintStrip(executor, painters, strips[0], 0);
+			for (int row = 0; row < rows; row++) {
+
+				List<Future<Boolean>> next = null;
+				if (row + 1 < rows) {
+					next = this.paintStrip(executor, painters, strips[(row + 1) % 2], row + 1);
+				}
+				this.waitFor(painting);
+				this.writeStrip(writer, strips[row % 2], row, line);
+				painting = next;
+
+			}
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that starts painting every tile of a strip
+	 * on the executor. Each tile is cleared first, since it still holds a strip
+	 * that was written before.
+	 *
+	 * @param executor
+	 * @param painters
+	 * @param tiles
+	 * @param row
+	 * @return
+	 */
+	private List<Future<Boolean>> paintStrip(ExecutorService executor, final BlockingQueue<LevelOfDetail> painters,
+			BufferedImage[] tiles, final int row) {
+
+		List<Future<Boolean>> painting = new ArrayList<Future<Boolean>>(tiles.length);
+		for (int column = 0; column < tiles.length; column++) {
+
+			final BufferedImage tile = tiles[column];
+			final int tileX = column * tileSize;
+			final int tileY = row * tileSize;
+			painting.add(executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws InterruptedException {
+
+					int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+					Arrays.fill(pixels, 0);
+					if (!TiledRenderer.this.reaches(tileX, tileY)) {
+						return false;
+					}
+
+					LevelOfDetail detail = painters.take();
+					Graphics2D g2 = tile.createGraphics();
+					try {
+						g2.setClip(0, 0, Math.min(tileSize, width - tileX), Math.min(tileSize, height - tileY));
+						g2.translate(-tileX, -tileY);
+						g2.transform(view);
+						detail.paint(g2);
+					} finally {
+						g2.dispose();
+						painters.put(detail);
+					}
+					return true;
+
+				}
+
+			}));
+
+		}
+		return painting;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns true if the box of the whole
+	 * tree, grown by how far strokes and leaves reach, reaches into the tile at
+	 * tileX, tileY.
+	 *
+	 * @param tileX
+	 * @param tileY
+	 * @return
+	 */
+	private boolean reaches(int tileX, int tileY) {
+
+		if (geometry.getBranches().size() == 0) {
+			return false;
+		}
+		Rectangle2D.Float bounds = painter.getSubtreeBounds(0);
+		float reach = geometry.getBranches().stroke(0) / 2f + SpatialIndex.LEAF_REACH;
+		Rectangle2D grown = new Rectangle2D.Float(bounds.x - reach, bounds.y - reach, bounds.width + 2 * reach,
+				bounds.height + 2 * reach);
+		return view.createTransformedShape(grown).intersects(tileX, tileY, tileSize, tileSize);
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that waits for every tile of a strip, and
+	 * counts how many were painted.
+	 *
+	 * @param painting
+	 * @throws IOException
+	 */
+	private void waitFor(List<Future<Boolean>> painting) throws IOException {
+
+		for (Future<Boolean> tile : painting) {
+			try {
+				if (tile.get()) {
+					this.tilesPainted++;
+				} else {
+					this.tilesSkipped++;
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("A tile could not be painted.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while painting tiles.", e);
+			}
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that writes the rows of a painted strip to
+	 * the file, putting each row together from the tiles.
+	 *
+	 * @param writer
+	 * @param tiles
+	 * @param row
+	 * @param line
+	 * @throws IOException
+	 */
+	private void writeStrip(PngStripWriter writer, BufferedImage[] tiles, int row, int[] line) throws IOException {
+
+		int stripHeight = Math.min(tileSize, height - row * tileSize);
+		for (int y = 0; y < stripHeight; y++) {
+
+			for (int column = 0; column < tiles.length; column++) {
+				int[] pixels = ((DataBufferInt) tiles[column].getRaster().getDataBuffer()).getData();
+				int tileX = column * tileSize;
+				System.arraycopy(pixels, y * tileSize, line, tileX, Math.min(tileSize, width - tileX));
+			}
+			writer.writeRow(line, 0);
+
+		}
+
+	}
+
+	/**
+	 *
+	 * Returns how many bytes write() needs besides the tree itself: the tiles of
+	 * two strips and the bounding boxes.
+	 *
+	 * @param width
+	 * @param tileSize
+	 * @param branchCount
+	 * @return
+	 */
+	public static long estimateBytes(int width, int tileSize, int branchCount) {
+
+		long columns = (width + tileSize - 1) / tileSize;
+		return 2 * 4L * columns * tileSize * tileSize + 16L * branchCount;
+
+	}
+
+	/**
+	 *
+	 * Sets the transform from the coordinates of the tree to the pixels of the
+	 * image. By default the tree is painted in its own coordinates.
+	 *
+	 * @param view
+	 */
+	public void setView(AffineTransform view) {
+		this.view = new AffineTransform(view);
+	}
+
+	public AffineTransform getView() {
+		return new AffineTransform(view);
+	}
+
+	/**
+	 *
+	 * Returns the box of the whole tree in its own coordinates.
+	 *
+	 * @return
+	 */
+	public Rectangle2D.Float getTreeBounds() {
+		return painter.getSubtreeBounds(0);
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public int getTilesPainted() {
+		return tilesPainted;
+	}
+
+	public int getTilesSkipped() {
+		return tilesSkipped;
+	}
+
+}
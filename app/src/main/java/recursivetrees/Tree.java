@@ -0,0 +1,436 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class holds all of the current settings for the tree, as well as a
+ * method to draw itself based on the settings set from Panels that are part of
+ * the GUI. All of the randomness in the tree comes from its seed.
+ * 
+ * 
+ * @author frankdesilets
+ *
+ */
+public class Tree {
+
+	private double splitAngle; // the angle in which two segments split
+	private int maxSegments; // the amount of segments we will draw
+	private double maxBranchNoise; // randomness to branch length
+	private double maxAngleNoise; // randomness to angle length
+	private int leafParts; // how many leaves drawn per segment
+	private boolean showFruit;
+	private Color fruitColor;
+	private Color leafColor;
+	private final int leavesAppear = 5; // leaves appear after the remaining segments to draw is less than 5
+	private int upperBranchLengthForCalculation; // used to hold the maximum branch length the user sets
+	private int theta;
+	private Color branchColor;
+	private int revision; // counts changes to the settings, so a generated tree can tell if it is out of date
+	private int geometryRevision; // counts only the changes that move or reshape branches
+	private long seed; // the same seed and settings always generate the same tree
+	private TreeRandom random; // used for the colors picked from the GUI
+
+	public Tree() {
+
+		this.seed = Tree.newSeed();
+		this.random = new TreeRandom(seed);
+		this.splitAngle = 20.0;
+		this.maxBranchNoise = 0.0;
+		this.maxAngleNoise = 0.0;
+		this.maxSegments = 6;
+		this.leafParts = 1;
+		this.showFruit = false;
+		this.leafColor = this.leafColor(); // randomly generate a starting leaf color
+		this.fruitColor = this.redFruitColor(); // randomly generate a starting red fruit color
+		this.theta = -90;
+		this.branchColor = new Color(122, 86, 0);
+
+	}
+
+	/**
+	 * 
+	 * Creates a copy of another Tree with all of the same settings, seed and
+	 * revision. A copy is used when a tree is generated on another thread, so the
+	 * GUI can keep changing the original.
+	 * 
+	 * @param other
+	 */
+	public Tree(Tree other) {
+
+		this.seed = other.seed;
+		this.random = new TreeRandom(seed);
+		this.splitAngle = other.splitAngle;
+		this.maxBranchNoise = other.maxBranchNoise;
+		this.maxAngleNoise = other.maxAngleNoise;
+		this.maxSegments = other.maxSegments;
+		this.leafParts = other.leafParts;
+		this.showFruit = other.showFruit;
+		this.leafColor = other.leafColor;
+		this.fruitColor = other.fruitColor;
+		this.upperBranchLengthForCalculation = other.upperBranchLengthForCalculation;
+		this.theta = other.theta;
+		this.branchColor = other.branchColor;
+		this.revision = other.revision;
+		this.geometryRevision = other.geometryRevision;
+
+	}
+
+	/**
+	 * 
+	 * Returns a new random seed. Seeds are kept below one billion so they are easy
+	 * to read and type, but any long works as a seed.
+	 * 
+	 * @return
+	 */
+	public static long newSeed() {
+
+		return ThreadLocalRandom.current().nextInt(1000000000);
+
+	}
+
+	/**
+	 * 
+	 * This method is called to draw a tree on the canvas. The tree is generated
+	 * from the current settings and painted straight away.
+	 * 
+	 * @param g
+	 * @param x
+	 * @param y
+	 */
+	public void drawOn(Graphics g, int x, int y) { // x and y is where the tree is "planted".
+
+		this.generate(x, y).paint(g);
+
+	}
+
+	/**
+	 * 
+	 * This method generates a new random tree from the current settings and
+	 * returns it as a TreeGeometry, which can be painted as many times as needed
+	 * without changing. The work is done by a TreeGenerator.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public TreeGeometry generate(int x, int y) { // x and y is where the tree is "planted".
+
+		return new TreeGenerator(this).generate(x, y);
+
+	}
+
+	/**
+	 * 
+	 * This is a helper method that returns a random green Color between a set of
+	 * RGB values. It is used for the starting leaf color.
+	 * 
+	 * @return
+	 */
+	Color leafColor() {
+		return Tree.leafColor(this.random);
+	}
+
+	/**
+	 * 
+	 * Returns a random leaf Color drawn from the given random number generator.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	static Color leafColor(TreeRandom random) {
+
+		/*
+		 * Red is calculated.
+		 */
+		int upperRed = 63;
+		int lowerRed = 44;
+		int red = (int) ((random.nextDouble() * (upperRed - lowerRed)) + lowerRed);
+
+		/*
+		 * Green is calculated.
+		 */
+		int upperGreen = 222;
+		int lowerGreen = 151;
+		int green = (int) ((random.nextDouble() * (upperGreen - lowerGreen)) + lowerGreen);
+
+		/*
+		 * Blue is calculated.
+		 */
+		int upperBlue = 95;
+		int lowerBlue = 66;
+		int blue = (int) ((random.nextDouble() * (upperBlue - lowerBlue)) + lowerBlue);
+
+		/*
+		 * Alpha is calculated.
+		 */
+		int upperAlpha = 255;
+		int lowerAlpha = 220;
+		int alpha = (int) ((random.nextDouble() * (upperAlpha - lowerAlpha)) + lowerAlpha);
+
+		/*
+		 * Creates and returns the Color.
+		 */
+		Color leafColor = new Color(red, green, blue, alpha);
+		return leafColor;
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that returns a random red Color between a set
+	 * of RGB values.
+	 * 
+	 * @return
+	 */
+	public Color redFruitColor() {
+		return Tree.redFruitColor(this.random);
+	}
+
+	/**
+	 * 
+	 * Returns a random red fruit Color drawn from the given random number
+	 * generator.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	static Color redFruitColor(TreeRandom random) {
+
+		/*
+		 * Red is calculated.
+		 */
+		int upperRed = 226;
+		int lowerRed = 201;
+		int red = (int) ((random.nextDouble() * (upperRed - lowerRed)) + lowerRed);
+
+		/*
+		 * Green is calculated.
+		 */
+		int upperGreen = 55;
+		int lowerGreen = 78;
+		int green = (int) ((random.nextDouble() * (upperGreen - lowerGreen)) + lowerGreen);
+
+		/*
+		 * Blue is calculated.
+		 */
+		int upperBlue = 86;
+		int lowerBlue = 98;
+		int blue = (int) ((random.nextDouble() * (upperBlue - lowerBlue)) + lowerBlue);
+
+		Color leafColor = new Color(red, green, blue);
+		return leafColor;
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that returns a random red Color between a set
+	 * of RGB values.
+	 * 
+	 * @return
+	 */
+	public Color yellowFruitColor() {
+		return Tree.yellowFruitColor(this.random);
+	}
+
+	/**
+	 * 
+	 * Returns a random yellow fruit Color drawn from the given random number
+	 * generator.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	static Color yellowFruitColor(TreeRandom random) {
+
+		/*
+		 * Red is calculated.
+		 */
+		int upperRed = 221;
+		int lowerRed = 179;
+		int red = (int) ((random.nextDouble() * (upperRed - lowerRed)) + lowerRed);
+
+		/*
+		 * Green is calculated.
+		 */
+		int upperGreen = 232;
+		int lowerGreen = 191;
+		int green = (int) ((random.nextDouble() * (upperGreen - lowerGreen)) + lowerGreen);
+
+		/*
+		 * Blue is calculated.
+		 */
+		int upperBlue = 64;
+		int lowerBlue = 22;
+		int blue = (int) ((random.nextDouble() * (upperBlue - lowerBlue)) + lowerBlue);
+
+		Color leafColor = new Color(red, green, blue);
+		return leafColor;
+
+	}
+
+	public double getSplitAngle() {
+		return splitAngle;
+	}
+
+	public void setSplitAngle(double splitAngle) {
+		if (this.splitAngle != splitAngle) {
+			this.splitAngle = splitAngle;
+			this.revision++;
+			this.geometryRevision++;
+		}
+	}
+
+	public int getMaxSegments() {
+		return maxSegments;
+	}
+
+	public void setMaxSegments(int maxSegments) {
+		if (this.maxSegments != maxSegments) {
+			this.maxSegments = maxSegments;
+			this.revision++;
+			this.geometryRevision++;
+		}
+	}
+
+	public double getMaxBranchNoise() {
+		return maxBranchNoise;
+	}
+
+	public void setMaxBranchNoise(double maxBranchNoise) {
+		if (this.maxBranchNoise != maxBranchNoise) {
+			this.maxBranchNoise = maxBranchNoise;
+			this.revision++;
+			this.geometryRevision++;
+		}
+	}
+
+	public double getMaxAngleNoise() {
+		return maxAngleNoise;
+	}
+
+	public void setMaxAngleNoise(double maxAngleNoise) {
+		if (this.maxAngleNoise != maxAngleNoise) {
+			this.maxAngleNoise = maxAngleNoise;
+			this.revision++;
+			this.geometryRevision++;
+		}
+	}
+
+	public int getLeafParts() {
+		return leafParts;
+	}
+
+	public void setLeafParts(int leafParts) {
+		if (this.leafParts != leafParts) {
+			this.leafParts = leafParts;
+			this.revision++;
+		}
+	}
+
+	public boolean isShowFruit() {
+		return showFruit;
+	}
+
+	public void setShowFruit(boolean showFruit) {
+		if (this.showFruit != showFruit) {
+			this.showFruit = showFruit;
+			this.revision++;
+		}
+	}
+
+	public Color getFruitColor() {
+		return fruitColor;
+	}
+
+	public void setFruitColor(Color fruitColor) {
+		if (!fruitColor.equals(this.fruitColor)) {
+			this.fruitColor = fruitColor;
+			this.revision++;
+		}
+	}
+
+	public Color getLeafColor() {
+		return leafColor;
+	}
+
+	public void setLeafColor(Color leafColor) {
+		if (!leafColor.equals(this.leafColor)) {
+			this.leafColor = leafColor;
+			this.revision++;
+		}
+	}
+
+	public int getUpperBranchLengthForCalculation() {
+		return upperBranchLengthForCalculation;
+	}
+
+	public void setUpperBranchLengthForCalculation(int upperBranchLengthForCalculation) {
+		if (this.upperBranchLengthForCalculation != upperBranchLengthForCalculation) {
+			this.upperBranchLengthForCalculation = upperBranchLengthForCalculation;
+			this.revision++;
+			this.geometryRevision++;
+		}
+	}
+
+	public void setTheta(int theta) {
+		if (this.theta != theta) {
+			this.theta = theta;
+			this.revision++;
+			this.geometryRevision++;
+		}
+	}
+
+	public Color getBranchColor() {
+		return branchColor;
+	}
+
+	public void setBranchColor(Color branchColor) {
+		if (!branchColor.equals(this.branchColor)) {
+			this.branchColor = branchColor;
+			this.revision++;
+		}
+	}
+
+	public int getLeavesAppear() {
+		return leavesAppear;
+	}
+
+	public int getTheta() {
+		return theta;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		if (this.seed != seed) {
+			this.seed = seed;
+			this.random = new TreeRandom(seed);
+			this.revision++;
+			this.geometryRevision++;
+		}
+	}
+
+	public int getRevision() {
+		return revision;
+	}
+
+	/**
+	 * 
+	 * Returns a counter that goes up whenever a setting that changes the branches
+	 * of the tree changes: the segments, angles, noise and seed. The other
+	 * settings only change how the branches are decorated with leaves, fruit and
+	 * colors, so when only the revision goes up and this does not, the branches of
+	 * the last generated tree can be kept. See TreeGenerator.redecorate().
+	 * 
+	 * @return
+	 */
+	public int getGeometryRevision() {
+		return geometryRevision;
+	}
+
+}
@@ -0,0 +1,565 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Stroke;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import javax.swing.*;
+
+/**
+ * 
+ * The purpose of this class is to provide a panel on which to draw the Tree on
+ * the GUI. The Tree is generated once and kept as a TreeGeometry, so repainting
+ * the panel shows the same tree until the settings change or a new tree is
+ * asked for.
+ * 
+ * Generating and drawing the tree is done by a RenderScheduler on a background
+ * thread, which hands back a finished TreeFrame. Until it arrives the panel
+ * keeps showing the last frame, and every repaint just copies its layers to the
+ * screen.
+ * 
+ * The mouse wheel zooms in and out around the mouse, dragging moves the tree
+ * around, and a double click goes back to the normal view. While zoomed, the
+ * tree is drawn straight from its TreeGeometry at the current zoom. With level
+ * of detail on, the LevelOfDetail of the frame draws it, which turns branches
+ * too small to see into dots. Otherwise the SpatialIndex of the frame is used to
+ * only draw what is inside the clip. The index is built by the RenderScheduler
+ * the first time it is needed, and until it is ready the LevelOfDetail draws
+ * the tree.
+ * 
+ * While its GrowthAnimator runs, the panel is painted by the animator instead,
+ * which draws the tree as far as it has grown.
+ * 
+ * With the stats overlay on (see setShowStats()), the RenderStats of the frame
+ * that is shown and the counts of the FrameCache are drawn below the tree.
+ * 
+ * When a frame cannot be made, the last one stays and the reason is shown in
+ * red at the top of the panel until a frame arrives.
+ * 
+ * In forest mode (see setForestSize()) the panel shows a Forest of many trees
+ * with the settings of the Tree instead of the one tree, and zooms the same
+ * way. A zoomed or moved forest is drawn by the RenderScheduler as well, and
+ * until it arrives, the last image of the forest is scaled to the new view.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class TreeCanvas extends JPanel {
+
+	/*
+	 * Where the tree is "planted" on the panel.
+	 */
+	public static final int PLANT_X = 330;
+	public static final int PLANT_Y = 490;
+
+	/*
+	 * How far the canvas can be zoomed out and in, and how much one notch of the
+	 * mouse wheel zooms.
+	 */
+	public static final double MIN_ZOOM = 1 / 64.0;
+	public static final double MAX_ZOOM = 256;
+	private static final double ZOOM_STEP = 1.25;
+
+	private Tree tree;
+	private TreeFrame frame; // the newest finished frame
+	private RenderScheduler scheduler;
+	private boolean requested; // whether a frame has been requested yet
+	private int requestedRevision; // the Tree revision of the last request
+	private int requestedWidth;
+	private int requestedHeight;
+	private int requestedLevels;
+	private int levels; // how many levels of the tree are shown, or 0 for all of them
+	private int forestSize; // how many trees the forest has, or 0 for just the one tree
+	private int requestedForestSize;
+	private ForestFrame forestFrame; // the newest finished forest
+	private ForestFrame viewFrame; // the forest viewImage was drawn from
+	private BufferedImage viewImage; // the forest drawn at viewZoom and viewOffsetX, viewOffsetY
+	private double viewZoom;
+	private double viewOffsetX;
+	private double viewOffsetY;
+	private ForestFrame requestedViewFrame;
+	private double requestedViewZoom;
+	private double requestedViewX;
+	private double requestedViewY;
+	private TreeFrame indexFrame; // the frame whose index was asked for last
+	private String error; // why the last request failed, or null
+
+	/*
+	 * The current view: a point of the tree is shown at point * zoom + offset.
+	 */
+	private double zoom = 1;
+	private double offsetX;
+	private double offsetY;
+	private Point dragStart;
+	private boolean levelOfDetail = true;
+	private boolean showStats;
+	private GrowthAnimator animator;
+
+	public TreeCanvas(Tree tree) {
+		this.tree = tree;
+		this.setPreferredSize(new Dimension(600, 600));
+		this.animator = new GrowthAnimator(this);
+
+		/*
+		 * When the scheduler has finished a frame, it replaces the current one and
+		 * the panel is repainted.
+		 */
+		this.scheduler = new RenderScheduler(new RenderScheduler.Listener() {
+
+			@Override
+			public void frameReady(TreeFrame frame) {
+
+				TreeCanvas.this.frame = frame;
+				TreeCanvas.this.error = null;
+				TreeCanvas.this.repaint();
+
+			}
+
+			@Override
+			public void forestReady(ForestFrame frame) {
+
+				TreeCanvas.this.forestFrame = frame;
+				TreeCanvas.this.viewFrame = null;
+				TreeCanvas.this.viewImage = null;
+				TreeCanvas.this.error = null;
+				TreeCanvas.this.repaint();
+
+			}
+
+			@Override
+			public void forestViewReady(ForestFrame frame, AffineTransform view, BufferedImage image) {
+
+				if (frame != forestFrame) {
+					return;
+				}
+				TreeCanvas.this.viewFrame = frame;
+				TreeCanvas.this.viewImage = image;
+				TreeCanvas.this.viewZoom = view.getScaleX();
+				TreeCanvas.this.viewOffsetX = view.getTranslateX();
+				TreeCanvas.this.viewOffsetY = view.getTranslateY();
+				TreeCanvas.this.repaint();
+
+			}
+
+			@Override
+			public void indexReady(TreeFrame frame) {
+
+				if (frame == TreeCanvas.this.frame) {
+					TreeCanvas.this.repaint();
+				}
+
+			}
+
+			@Override
+			public void renderFailed(Throwable failure) {
+
+				if (failure instanceof OutOfMemoryError) {
+					TreeCanvas.this.error = "There is not enough memory for this tree.";
+				} else if (failure.getMessage() != null) {
+					TreeCanvas.this.error = failure.getMessage();
+				} else {
+					TreeCanvas.this.error = "The tree could not be drawn: " + failure;
+				}
+				TreeCanvas.this.indexFrame = null; // its index may have been dropped
+				TreeCanvas.this.repaint();
+
+			}
+
+		});
+
+		/*
+		 * The mouse listener handles zooming with the wheel, moving the tree by
+		 * dragging, and going back to the whole tree with a double click.
+		 */
+		MouseAdapter mouse = new MouseAdapter() {
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+
+				double factor = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+				TreeCanvas.this.zoomAround(e.getX(), e.getY(), zoom * factor);
+
+			}
+
+			@Override
+			public void mousePressed(MouseEvent e) {
+				dragStart = e.getPoint();
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+
+				if (dragStart == null) {
+					return;
+				}
+				offsetX += e.getX() - dragStart.x;
+				offsetY += e.getY() - dragStart.y;
+				dragStart = e.getPoint();
+				TreeCanvas.this.repaint();
+
+			}
+
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				dragStart = null;
+			}
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+
+				if (e.getClickCount() == 2) {
+					TreeCanvas.this.zoomAround(0, 0, 1);
+				}
+
+			}
+
+		};
+		this.addMouseListener(mouse);
+		this.addMouseMotionListener(mouse);
+		this.addMouseWheelListener(mouse);
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that changes the zoom, keeping the point of
+	 * the tree under x and y in the same place. The zoom is kept between MIN_ZOOM
+	 * and MAX_ZOOM, and going back to 1 also goes back to the normal view.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param newZoom
+	 */
+	private void zoomAround(int x, int y, double newZoom) {
+
+		newZoom = Math.min(Math.max(newZoom, MIN_ZOOM), MAX_ZOOM);
+		if (Math.abs(newZoom - 1) < 1e-9) {
+			newZoom = 1;
+			this.offsetX = 0;
+			this.offsetY = 0;
+		} else {
+			this.offsetX = x - (x - offsetX) * newZoom / zoom;
+			this.offsetY = y - (y - offsetY) * newZoom / zoom;
+		}
+		this.zoom = newZoom;
+		this.repaint();
+
+	}
+
+	/**
+	 * A border rectangle and the Tree is drawn. If the settings of the Tree or the
+	 * size of the panel have changed, a new frame is requested, and the last one
+	 * is shown until it is ready. When zoomed or moved, the tree is drawn at the
+	 * current view, and only the part of it inside the clip.
+	 */
+	@Override
+	public void paintComponent(Graphics g) {
+
+		super.paintComponent(g); // clears the background
+		g.drawRect(75, 30, 500, 500);
+
+		this.refresh();
+		if (forestSize > 0) {
+			this.paintForest(g);
+			if (forestFrame != null) {
+				this.paintStats(g, forestFrame.getStats());
+			}
+			this.paintError(g);
+			return;
+		}
+		if (frame == null) {
+			this.paintError(g);
+			return;
+		}
+
+		if (animator.isRunning()) {
+			Graphics2D g2 = (Graphics2D) g.create();
+			g2.clipRect(0, 0, this.getWidth(), this.getHeight());
+			g2.translate(offsetX, offsetY);
+			g2.scale(zoom, zoom);
+			animator.paint(g2, frame);
+			g2.dispose();
+			animator.paintReadout((Graphics2D) g, 80, 20);
+		} else if (zoom == 1 && offsetX == 0 && offsetY == 0) {
+			frame.drawLayers(g, 0, 0);
+		} else {
+			Graphics2D g2 = (Graphics2D) g.create();
+			g2.clipRect(0, 0, this.getWidth(), this.getHeight());
+			g2.translate(offsetX, offsetY);
+			g2.scale(zoom, zoom);
+			SpatialIndex index = levelOfDetail ? null : frame.getBuiltIndex();
+			if (index != null) {
+				frame.getGeometry().paint(g2, index);
+			} else {
+				if (!levelOfDetail && indexFrame != frame) {
+					this.indexFrame = frame;
+					scheduler.requestIndex(frame);
+				}
+				frame.getDetail().paint(g2);
+			}
+			g2.dispose();
+		}
+		this.paintStats(g, frame.getStats());
+		this.paintError(g);
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that draws why the last request failed at
+	 * the top of the border, if it did.
+	 * 
+	 * @param g
+	 */
+	private void paintError(Graphics g) {
+
+		if (error == null) {
+			return;
+		}
+		g.setColor(Color.RED);
+		g.drawString(error, 80, 45);
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that draws the stats of the frame that is
+	 * shown, and the counts of the cache, below the border, if the overlay is on.
+	 * 
+	 * @param g
+	 * @param stats
+	 */
+	private void paintStats(Graphics g, RenderStats stats) {
+
+		if (!showStats || stats == null) {
+			return;
+		}
+
+		FrameCache cache = scheduler.getCache();
+		String[] lines = {
+				String.format("%.1f ms to generate, %.1f ms to draw, %.1f ms in all%s",
+						stats.getGenerationNanos() / 1e6, stats.getRasterNanos() / 1e6, stats.getTotalNanos() / 1e6,
+						stats.isCacheHit() ? " (from the cache)" : ""),
+				String.format("%,d branches, %,d leaves, %,d fruit, %.1f MB allocated", stats.getBranches(),
+						stats.getLeaves(), stats.getFruit(), stats.getAllocatedBytes() / (1024.0 * 1024.0)),
+				String.format("cache: %,d hits, %,d misses, %,d evictions, %,d frames in %.1f MB", cache.getHits(),
+						cache.getMisses(), cache.getEvictions(), cache.size(), cache.getBytes() / (1024.0 * 1024.0)) };
+
+		g.setColor(Color.DARK_GRAY);
+		int lineHeight = g.getFontMetrics().getHeight();
+		for (int i = 0; i < lines.length; i++) {
+			g.drawString(lines[i], 80, 530 + lineHeight * (i + 1));
+		}
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that draws the forest, as its image or,
+	 * when zoomed or moved, at the current view. The forest is drawn at a new view
+	 * by the scheduler, and until that image arrives, the last image drawn at
+	 * another view, or else the image of the forest, is scaled to this one.
+	 * 
+	 * @param g
+	 */
+	private void paintForest(Graphics g) {
+
+		if (forestFrame == null) {
+			return;
+		}
+
+		if (zoom == 1 && offsetX == 0 && offsetY == 0) {
+			g.drawImage(forestFrame.getImage(), 0, 0, null);
+			return;
+		}
+
+		if (requestedViewFrame != forestFrame || requestedViewZoom != zoom || requestedViewX != offsetX
+				|| requestedViewY != offsetY) {
+			this.requestedViewFrame = forestFrame;
+			this.requestedViewZoom = zoom;
+			this.requestedViewX = offsetX;
+			this.requestedViewY = offsetY;
+			AffineTransform view = AffineTransform.getTranslateInstance(offsetX, offsetY);
+			view.scale(zoom, zoom);
+			scheduler.requestForestView(forestFrame, view, this.getWidth(), this.getHeight(),
+					this.getGraphicsConfiguration());
+		}
+
+		/*
+		 * The image of the forest itself was drawn at a zoom of 1 with no offset.
+		 */
+		BufferedImage image = forestFrame.getImage();
+		double imageZoom = 1;
+		double imageX = 0;
+		double imageY = 0;
+		if (viewFrame == forestFrame) {
+			image = viewImage;
+			imageZoom = viewZoom;
+			imageX = viewOffsetX;
+			imageY = viewOffsetY;
+		}
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.clipRect(0, 0, this.getWidth(), this.getHeight());
+		if (imageZoom != zoom || imageX != offsetX || imageY != offsetY) {
+			g2.translate(offsetX - imageX * zoom / imageZoom, offsetY - imageY * zoom / imageZoom);
+			g2.scale(zoom / imageZoom, zoom / imageZoom);
+		}
+		g2.drawImage(image, 0, 0, null);
+		g2.dispose();
+
+	}
+
+	/**
+	 * This method requests a new frame from the scheduler if the current one, or
+	 * the one being made, no longer matches the settings of the Tree, the size of
+	 * the panel, the amount of levels shown or the size of the forest.
+	 */
+	public void refresh() {
+
+		int width = this.getWidth();
+		int height = this.getHeight();
+		if (requested && requestedRevision == tree.getRevision() && requestedWidth == width
+				&& requestedHeight == height && requestedLevels == levels && requestedForestSize == forestSize) {
+			return;
+		}
+
+		this.requested = true;
+		this.requestedRevision = tree.getRevision();
+		this.requestedWidth = width;
+		this.requestedHeight = height;
+		this.requestedLevels = levels;
+		this.requestedForestSize = forestSize;
+		if (forestSize > 0) {
+			scheduler.requestForest(tree, forestSize, width, height, this.getGraphicsConfiguration(), forestFrame);
+		} else {
+			scheduler.request(tree, PLANT_X, PLANT_Y, width, height, levels, this.getGraphicsConfiguration(), frame);
+		}
+
+	}
+
+	public Tree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Shows only the first levels levels of the tree, or the whole tree if levels
+	 * is 0. When the amount of levels goes up with nothing else changed, the new
+	 * levels are grown onto the tree that is shown instead of generating it again.
+	 * 
+	 * @param levels
+	 */
+	public void setLevels(int levels) {
+
+		this.levels = Math.max(levels, 0);
+		this.repaint();
+
+	}
+
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Shows a forest of forestSize trees with the settings of the Tree instead of
+	 * the one tree, or the one tree again if forestSize is 0.
+	 * 
+	 * @param forestSize
+	 */
+	public void setForestSize(int forestSize) {
+
+		this.forestSize = Math.max(forestSize, 0);
+		if (this.forestSize == 0) {
+			this.forestFrame = null; // so its trees can be garbage collected
+			this.viewFrame = null;
+			this.viewImage = null;
+			this.requestedViewFrame = null;
+		}
+		this.repaint();
+
+	}
+
+	public int getForestSize() {
+		return forestSize;
+	}
+
+	public ForestFrame getForestFrame() {
+		return forestFrame;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Returns the tree that is currently shown, or null if the first frame has not
+	 * been made yet.
+	 * 
+	 * @return
+	 */
+	public TreeGeometry getGeometry() {
+
+		if (frame == null) {
+			return null;
+		}
+		return frame.getGeometry();
+
+	}
+
+	public TreeFrame getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Sets whether the stats of the frame that is shown are drawn below the tree.
+	 * 
+	 * @param showStats
+	 */
+	public void setShowStats(boolean showStats) {
+
+		this.showStats = showStats;
+		this.repaint();
+
+	}
+
+	public boolean isShowStats() {
+		return showStats;
+	}
+
+	public RenderMetrics getMetrics() {
+		return scheduler.getMetrics();
+	}
+
+	public GrowthAnimator getAnimator() {
+		return animator;
+	}
+
+	public double getZoom() {
+		return zoom;
+	}
+
+	public boolean isLevelOfDetail() {
+		return levelOfDetail;
+	}
+
+	/**
+	 * Sets whether branches too small to see are drawn as dots while zoomed.
+	 * 
+	 * @param levelOfDetail
+	 */
+	public void setLevelOfDetail(boolean levelOfDetail) {
+
+		this.levelOfDetail = levelOfDetail;
+		this.repaint();
+
+	}
+
+}
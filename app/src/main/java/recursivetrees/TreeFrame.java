@@ -0,0 +1,141 @@
+package recursivetrees;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+/**
+ * This class holds one finished frame of the canvas: a generated tree, the
+ * images it was drawn into, a LevelOfDetail of the tree for when the canvas is
+ * zoomed, and the Tree revisions it was made from. A frame is built completely
+ * on the render thread and then handed to the canvas in one piece, so the
+ * canvas never sees a half-finished tree.
+ *
+ * The SpatialIndex of the tree is only needed when the canvas paints it zoomed
+ * without level of detail, so it is not built with the frame but the first
+ * time getIndex() is called, and then kept. It shares what it can with the
+ * index of the frame before, if that one had been built.
+ *
+ * The tree is drawn into three transparent images, or layers: one for the
+ * branches, one for the leaves and one for the fruit. The canvas draws them one
+ * over the other. When only part of the tree changes, the next frame shares
+ * the layers that are still the same instead of drawing them again, so frames
+ * and their layers are never changed once they are made.
+ *
+ * A frame also carries the RenderStats of how it was made.
+ *
+ * @author frankdesilets
+ *
+ */
+public class TreeFrame {
+
+	private final TreeGeometry geometry;
+	private final BufferedImage branchLayer;
+	private final BufferedImage leafLayer;
+	private final BufferedImage fruitLayer;
+	private SpatialIndex index; // built by getIndex()
+	private SpatialIndex earlierIndex; // shared from until the index is built
+	private final LevelOfDetail detail;
+	private final int revision;
+	private final int geometryRevision;
+	private final RenderStats stats;
+
+	public TreeFrame(TreeGeometry geometry, BufferedImage branchLayer, BufferedImage leafLayer,
+			BufferedImage fruitLayer, SpatialIndex earlierIndex, LevelOfDetail detail, int revision,
+			int geometryRevision, RenderStats stats) {
+
+		this.geometry = geometry;
+		this.branchLayer = branchLayer;
+		this.leafLayer = leafLayer;
+		this.fruitLayer = fruitLayer;
+		this.earlierIndex = earlierIndex;
+		this.detail = detail;
+		this.revision = revision;
+		this.geometryRevision = geometryRevision;
+		this.stats = stats;
+
+	}
+
+	/**
+	 *
+	 * Draws the three layers at x and y, branches first.
+	 *
+	 * @param g
+	 * @param x
+	 * @param y
+	 */
+	public void drawLayers(Graphics g, int x, int y) {
+
+		g.drawImage(branchLayer, x, y, null);
+		g.drawImage(leafLayer, x, y, null);
+		g.drawImage(fruitLayer, x, y, null);
+
+	}
+
+	public TreeGeometry getGeometry() {
+		return geometry;
+	}
+
+	public BufferedImage getBranchLayer() {
+		return branchLayer;
+	}
+
+	public BufferedImage getLeafLayer() {
+		return leafLayer;
+	}
+
+	public BufferedImage getFruitLayer() {
+		return fruitLayer;
+	}
+
+	/**
+	 *
+	 * Returns the SpatialIndex of the tree, building it the first time.
+	 *
+	 * @return
+	 */
+	public synchronized SpatialIndex getIndex() {
+
+		if (index == null) {
+			this.index = new SpatialIndex(geometry, earlierIndex);
+			this.earlierIndex = null;
+		}
+		return index;
+
+	}
+
+	/**
+	 *
+	 * Returns the SpatialIndex of the tree if it has been built, or null, without
+	 * building it.
+	 *
+	 * @return
+	 */
+	public synchronized SpatialIndex getBuiltIndex() {
+		return index;
+	}
+
+	public LevelOfDetail getDetail() {
+		return detail;
+	}
+
+	public int getRevision() {
+		return revision;
+	}
+
+	public int getGeometryRevision() {
+		return geometryRevision;
+	}
+
+	public RenderStats getStats() {
+		return stats;
+	}
+
+	public int getWidth() {
+		return branchLayer.getWidth();
+	}
+
+	public int getHeight() {
+		return branchLayer.getHeight();
+	}
+
+}
@@ -0,0 +1,72 @@
+package recursivetrees;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This is the Java Flight Recorder event for generating a tree, or a forest of
+ * trees, on the render thread of a RenderScheduler. It lasts from the start of
+ * generation until the geometry is done, so a recording shows it next to the
+ * garbage collections and Event Dispatch Thread stalls it overlaps.
+ *
+ * The settings are those the trees were generated with. A generation that is
+ * cancelled by a newer request is not committed.
+ *
+ * @author frankdesilets
+ *
+ */
+@Name("recursivetrees.TreeGeneration")
+@Label("Tree Generation")
+@Category("Recursive Trees")
+@Description("Generating the geometry of a tree or a forest")
+public class TreeGenerationEvent extends Event {
+
+	@Label("Seed")
+	long seed;
+
+	@Label("Max Segments")
+	int maxSegments;
+
+	@Label("Leaf Parts")
+	int leafParts;
+
+	@Label("Show Fruit")
+	boolean showFruit;
+
+	@Label("Levels")
+	@Description("How many levels of the trees were generated")
+	int levels;
+
+	@Label("Trees")
+	int trees;
+
+	@Label("Branches")
+	long branches;
+
+	/**
+	 * Creates an event for generating trees trees with the settings of tree, up
+	 * to levels levels.
+	 *
+	 * @param tree
+	 * @param levels
+	 * @param trees
+	 */
+	public TreeGenerationEvent(Tree tree, int levels, int trees) {
+
+		this.seed = tree.getSeed();
+		this.maxSegments = tree.getMaxSegments();
+		this.leafParts = tree.getLeafParts();
+		this.showFruit = tree.isShowFruit();
+		this.levels = levels;
+		this.trees = trees;
+
+	}
+
+	public void setBranches(long branches) {
+		this.branches = branches;
+	}
+
+}
@@ -0,0 +1,978 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class generates a TreeGeometry from the settings of a Tree. It follows
+ * the same rules as the original recursive drawing of the tree, where every
+ * branch splits into two shorter branches until no segments remain, but walks
+ * the tree with its own array-backed stack instead of recursion. The depth of
+ * the tree is therefore not limited by the thread stack.
+ *
+ * Branch i of the tree is stored at index i of the SegmentBuffer, with its two
+ * child branches at 2i + 1 and 2i + 2. Because of this the two halves of any
+ * branch can be generated at the same time, and large trees are split into
+ * fork-join tasks down to a configurable depth.
+ *
+ * @author frankdesilets
+ *
+ */
+public class TreeGenerator {
+
+	/*
+	 * Trees with at least this many segments are generated in parallel, and by
+	 * default the tasks are split down to this depth (256 subtrees).
+	 */
+	public static final int PARALLEL_SEGMENTS = 16;
+	public static final int DEFAULT_PARALLEL_DEPTH = 8;
+
+	/*
+	 * Cancellation is checked whenever the index of the next branch is a multiple
+	 * of 4096.
+	 */
+	private static final int CANCEL_CHECK_MASK = 4095;
+
+	/*
+	 * The amount of leaf colors picked for each tree. Every leaf uses one of them.
+	 */
+	public static final int LEAF_PALETTE_SIZE = 64;
+
+	/*
+	 * The settings are copied out of the Tree when the generator is created.
+	 */
+	private final int maxSegments;
+	private final double splitAngle;
+	private final double maxAngleNoise;
+	private final int upperBranchLength;
+	private final int leafParts;
+	private final boolean showFruit;
+	private final int leavesAppear;
+	private final int theta;
+	private final long seed;
+	private final Tree tree;
+
+	/*
+	 * The sink that the tree being generated is handed to.
+	 */
+	private TreeSink sink;
+	private int firstLeafBranch;
+	private int initialStroke;
+	private Color[] leafPalette;
+	private Color[] sharedLeafPalette; // the palette given to setLeafPalette(), if any
+
+	/*
+	 * Branches above this depth are generated as separate fork-join tasks, and the
+	 * subtrees below it are generated sequentially. Zero means the whole tree is
+	 * generated on the calling thread.
+	 */
+	private int parallelDepth;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private volatile boolean cancelled; // set from another thread to stop generating
+	private boolean exactTrig; // when true, Math.sin() and Math.cos() are used instead of the TrigTable
+
+	public TreeGenerator(Tree tree) {
+
+		this.tree = tree;
+		this.maxSegments = tree.getMaxSegments();
+		this.splitAngle = tree.getSplitAngle();
+		this.maxAngleNoise = tree.getMaxAngleNoise();
+		this.upperBranchLength = tree.getUpperBranchLengthForCalculation();
+		this.leafParts = tree.getLeafParts();
+		this.showFruit = tree.isShowFruit();
+		this.leavesAppear = tree.getLeavesAppear();
+		this.theta = tree.getTheta();
+		this.seed = tree.getSeed();
+
+		/*
+		 * Small trees are not worth splitting into tasks.
+		 */
+		if (maxSegments >= PARALLEL_SEGMENTS) {
+			this.parallelDepth = DEFAULT_PARALLEL_DEPTH;
+		}
+
+	}
+
+	/**
+	 *
+	 * Returns about how many bytes the geometry of a tree with the given settings
+	 * takes, including what is only needed while generating it.
+	 *
+	 * @param tree
+	 * @return
+	 */
+	public static long estimateBytes(Tree tree) {
+
+		long branches = SegmentBuffer.branchCount(tree.getMaxSegments());
+		long leafBranches = LeafBuffer.leafBranchCount(tree.getMaxSegments(), tree.getLeavesAppear());
+		long leaves = leafBranches * Math.max(Math.min(tree.getLeafParts(), 3), 0);
+		return branches * SegmentBuffer.BYTES_PER_BRANCH + (leaves + leafBranches) * LeafBuffer.BYTES_PER_OVAL
+				+ leafBranches; // one boolean per branch end for the fruit
+
+	}
+
+	/**
+	 *
+	 * This method generates a new tree planted at x and y. A TreeGenerator
+	 * generates one tree at a time.
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public TreeGeometry generate(int x, int y) {
+
+		/*
+		 * The buffers are sized for the whole tree before generation starts. Every
+		 * branch has a fixed index, so the tasks can fill the buffers at the same time
+		 * without getting in each other's way.
+		 */
+		GeometryBuilder builder = new GeometryBuilder(maxSegments, leavesAppear, this.leavesPerBranch());
+		this.run(builder, x, y, true);
+		return builder.build();
+
+	}
+
+	/**
+	 *
+	 * This method generates a new tree planted at x and y, like generate(), but
+	 * stores it in buffers handed out by the pool instead of new ones. The tree is
+	 * only good until the pool is reset.
+	 *
+	 * @param x
+	 * @param y
+	 * @param pool
+	 * @return
+	 */
+	public TreeGeometry generate(int x, int y, GeometryPool pool) {
+
+		GeometryBuilder builder = pool.builder(maxSegments, leavesAppear, this.leavesPerBranch());
+		this.run(builder, x, y, true);
+		return builder.build();
+
+	}
+
+	/**
+	 *
+	 * This method generates a new tree planted at x and y, and hands every part of
+	 * it to the sink as soon as it is made instead of keeping it. The tree is
+	 * generated on the calling thread, in the same order as the recursive version,
+	 * so the sink does not have to be thread-safe. Only one stack per level is kept,
+	 * so even the deepest tree takes almost no memory.
+	 *
+	 * @param x
+	 * @param y
+	 * @param sink
+	 */
+	public void generate(int x, int y, TreeSink sink) {
+
+		this.run(sink, x, y, false);
+
+	}
+
+	/**
+	 *
+	 * This method makes a tree with the branches of an earlier tree and new
+	 * leaves, fruit and colors. It is used when only decoration settings have
+	 * changed since the earlier tree was generated, so the tree must have the same
+	 * settings for everything else (see Tree.getGeometryRevision()). Since the
+	 * leaves and fruit of every branch come from its own decoration stream, the
+	 * result is the same as generating the whole tree again.
+	 *
+	 * The tree is decorated in layers, and a layer is only made again if a setting
+	 * it depends on has changed. The branches are always kept, and only the branch
+	 * color is new. The leaves are kept unless the leaves per branch changed. The
+	 * fruit is kept, with a new color, if it is still shown and the leaves were
+	 * kept, since fruit is drawn from the stream after the leaves of its branch.
+	 * Turning fruit off or changing its color therefore takes no time at all.
+	 *
+	 * @param earlier
+	 * @return
+	 */
+	public TreeGeometry redecorate(TreeGeometry earlier) {
+
+		return this.extend(earlier, earlier.getLevels(), 0, 0); // no branch is grown, so x and y are not used
+
+	}
+
+	/**
+	 *
+	 * This method returns the first levels levels of the tree, planted at x and
+	 * y, by growing an earlier tree made with the same settings (see
+	 * Tree.getGeometryRevision()). Only the branches on the new levels are
+	 * generated and stored after the ones of the earlier tree, so going from n to
+	 * n + 1 levels costs the 2^n new branches, and the earlier branches stay where
+	 * they are. The earlier tree is decorated again like redecorate() does if the
+	 * leaf or fruit settings have changed. If earlier is null, or has more levels
+	 * than asked for, the tree is grown from the trunk.
+	 *
+	 * Every branch is as long and as thick as it is in the whole tree, so with all
+	 * of its levels grown the tree is the same as the one generate() makes. The
+	 * ends and angles of the last level are all that is needed to grow the next
+	 * one. The ends are stored, and the angles are worked out again from the
+	 * split streams, which takes one number for every branch that is kept.
+	 *
+	 * @param earlier
+	 * @param levels
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public TreeGeometry grow(TreeGeometry earlier, int levels, int x, int y) {
+
+		levels = Math.max(Math.min(levels, maxSegments), 0);
+		if (earlier == null || earlier.getLevels() > levels) {
+			earlier = this.emptyTree();
+		} else if (earlier.getBranches().capacity() != SegmentBuffer.branchCount(maxSegments)) {
+			throw new IllegalArgumentException("The earlier tree was not made with " + maxSegments + " segments.");
+		}
+		return this.extend(earlier, levels, x, y);
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that extends an earlier tree to the given
+	 * amount of levels, keeping as much of it as its settings allow. If the trunk
+	 * is grown, it is planted at x and y.
+	 *
+	 * @param earlier
+	 * @param levels
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private TreeGeometry extend(TreeGeometry earlier, int levels, int x, int y) {
+
+		SegmentBuffer earlierBranches = earlier.getBranches();
+		int keptLevels = earlier.getLevels();
+		int leavesPerBranch = this.leavesPerBranch();
+		Color[] fruitPalette = new Color[] { tree.getFruitColor() };
+
+		/*
+		 * Fruit is drawn from the stream after the leaves of its branch, so it can
+		 * only be kept along with the leaves. A tree without leaf-carrying branches
+		 * yet has nothing to keep, which is always fine.
+		 */
+		boolean keepLeaves = earlier.getLeavesPerBranch() == leavesPerBranch;
+		boolean keepFruit = keepLeaves && (earlierBranches.size() <= earlier.getFirstLeafBranch()
+				|| showFruit == (earlier.getFruit().size() > 0));
+
+		if (levels == keptLevels && keepLeaves && (keepFruit || !showFruit)) {
+			LeafBuffer fruit = showFruit ? earlier.getFruit() : new LeafBuffer(0);
+			return new TreeGeometry(earlierBranches, earlier.getLeaves(), fruit, earlier.getFirstLeafBranch(),
+					leavesPerBranch, tree.getBranchColor(), earlier.getLeafPalette(), fruitPalette);
+		}
+
+		GeometryBuilder builder = new GeometryBuilder(earlier, SegmentBuffer.branchCount(levels), leavesPerBranch,
+				keepLeaves, keepFruit && showFruit);
+		SegmentBuffer branches = builder.getBranches();
+		boolean redecorate = !keepLeaves || (showFruit && !keepFruit);
+		TreeRandom random = new TreeRandom(seed);
+		this.sink = builder;
+		this.firstLeafBranch = earlier.getFirstLeafBranch();
+		this.initialStroke = maxSegments - 1;
+
+		try {
+
+			builder.start(tree.getBranchColor(), this.leafPalette(), fruitPalette);
+
+			/*
+			 * The tree is walked one level at a time, keeping the angles of the branches
+			 * on the level. A kept level is only visited if its leaves or fruit have to be
+			 * made again.
+			 */
+			int[] angles = new int[] { theta };
+			for (int depth = 0; depth < levels; depth++) {
+
+				int first = (1 << depth) - 1;
+				boolean kept = depth < keptLevels;
+				if (!kept || (redecorate && first + angles.length > firstLeafBranch)) {
+
+					for (int k = 0; k < angles.length; k++) {
+
+						int i = first + k;
+						if ((i & CANCEL_CHECK_MASK) == 0) {
+							this.checkCancelled();
+						}
+
+						if (kept) {
+							if (i >= firstLeafBranch) {
+								this.decorateAgain(random, i, (int) branches.x2(i), (int) branches.y2(i), angles[k],
+										keepLeaves);
+							}
+						} else if (i == 0) {
+							this.growBranch(random, i, x, y, angles[k]);
+						} else {
+							int parent = (i - 1) / 2;
+							this.growBranch(random, i, (int) branches.x2(parent), (int) branches.y2(parent),
+									angles[k]);
+						}
+
+					}
+
+				}
+
+				if (depth + 1 < levels) {
+					angles = this.childAngles(random, first, angles);
+				}
+
+			}
+
+		} finally {
+			this.sink = null;
+		}
+
+		return builder.build();
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that makes the leaves and fruit of a kept
+	 * branch again. If the leaves are kept, their numbers are still taken from
+	 * the stream, so the fruit gets the same numbers as when the tree is
+	 * generated.
+	 *
+	 * @param random
+	 * @param i
+	 * @param x
+	 * @param y
+	 * @param theta
+	 * @param keepLeaves
+	 */
+	private void decorateAgain(TreeRandom random, int i, int x, int y, double theta, boolean keepLeaves) {
+
+		int slot = i - firstLeafBranch;
+		random.seek(i, TreeRandom.DECORATION);
+		if (keepLeaves) {
+			for (int leaf = 0; leaf < this.leavesPerBranch(); leaf++) {
+				this.leafColorIndex(random);
+			}
+		} else {
+			this.addLeaves(random, slot * this.leavesPerBranch(), x, y, theta);
+		}
+		this.addFruit(random, slot, x, y, theta);
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that works out the angles of the branches
+	 * on the next level from the angles of the level starting at branch first, in
+	 * the same way generateSubtree() does.
+	 *
+	 * @param random
+	 * @param first
+	 * @param angles
+	 * @return
+	 */
+	private int[] childAngles(TreeRandom random, int first, int[] angles) {
+
+		int[] next = new int[2 * angles.length];
+		for (int k = 0; k < angles.length; k++) {
+			int i = first + k;
+			double split = i == 0 ? this.splitAngle : this.childSplitAngle(random, i);
+			next[2 * k] = this.childAngle(angles[k], split);
+			next[2 * k + 1] = this.childAngle(angles[k], -split);
+		}
+		return next;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that makes a tree with no branches yet and
+	 * buffers big enough for the whole tree, to grow from.
+	 *
+	 * @return
+	 */
+	private TreeGeometry emptyTree() {
+
+		int leafBranches = LeafBuffer.leafBranchCount(maxSegments, leavesAppear);
+		int leavesPerBranch = this.leavesPerBranch();
+		return new TreeGeometry(new SegmentBuffer(maxSegments),
+				new LeafBuffer(Math.multiplyExact(leafBranches, leavesPerBranch)), new LeafBuffer(0),
+				SegmentBuffer.branchCount(maxSegments) - leafBranches, leavesPerBranch, tree.getBranchColor(),
+				this.leafPalette(), new Color[] { tree.getFruitColor() });
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that generates the tree into a sink, either
+	 * split into fork-join tasks or all on the calling thread.
+	 *
+	 * @param sink
+	 * @param x
+	 * @param y
+	 * @param parallel
+	 */
+	private void run(TreeSink sink, int x, int y, boolean parallel) {
+
+		int branchCount = SegmentBuffer.branchCount(maxSegments);
+		this.sink = sink;
+		this.firstLeafBranch = branchCount - LeafBuffer.leafBranchCount(maxSegments, leavesAppear);
+		this.initialStroke = maxSegments - 1; // to ensure even stroke throughout the tree, the initial stroke is
+												// set to the amount of segments.
+
+		try {
+
+			sink.start(tree.getBranchColor(), this.leafPalette(), new Color[] { tree.getFruitColor() });
+			if (branchCount > 0) {
+				if (parallel && parallelDepth > 0 && maxSegments > parallelDepth) {
+					pool.invoke(new BranchTask(0, x, y, this.theta, this.splitAngle));
+				} else {
+					this.generateSubtree(0, x, y, this.theta, this.splitAngle);
+				}
+			}
+
+		} finally {
+			this.sink = null;
+		}
+
+	}
+
+	/**
+	 *
+	 * Generates branch i and every branch growing from it on the calling thread.
+	 * The branches waiting to be generated are kept on an array-backed stack
+	 * instead of by recursion.
+	 *
+	 * @param root
+	 * @param x
+	 * @param y
+	 * @param theta
+	 * @param splitAngle
+	 */
+	private void generateSubtree(int root, int x, int y, double theta, double splitAngle) {
+
+		/*
+		 * Since the last branch pushed is always generated next, the stack never holds
+		 * more than one waiting branch per level, plus the one being generated.
+		 */
+		int stackSize = maxSegments - TreeGenerator.depthOf(root) + 1;
+		int[] stackIndex = new int[stackSize];
+		int[] stackX = new int[stackSize];
+		int[] stackY = new int[stackSize];
+		double[] stackTheta = new double[stackSize];
+		double[] stackSplit = new double[stackSize];
+
+		TreeRandom random = new TreeRandom(seed);
+
+		stackIndex[0] = root;
+		stackX[0] = x;
+		stackY[0] = y;
+		stackTheta[0] = theta;
+		stackSplit[0] = splitAngle;
+		int top = 1;
+
+		while (top > 0) {
+
+			/*
+			 * Every few thousand branches the generator checks whether it has been
+			 * cancelled.
+			 */
+			if ((stackIndex[top - 1] & CANCEL_CHECK_MASK) == 0) {
+				this.checkCancelled();
+			}
+
+			/*
+			 * The next branch is taken off the stack and generated.
+			 */
+			top--;
+			int i = stackIndex[top];
+			double branchTheta = stackTheta[top];
+			double branchSplit = stackSplit[top];
+			long end = this.growBranch(random, i, stackX[top], stackY[top], branchTheta);
+
+			/*
+			 * If there are segments left, the two new branches are pushed with their new
+			 * angles and split angles. The second one is pushed first so that the first
+			 * one is generated first, in the same order as the recursive version.
+			 */
+			if (this.hasChildren(i)) {
+
+				int nx = TreeGenerator.endX(end);
+				int ny = TreeGenerator.endY(end);
+				int splitAngle1 = this.childSplitAngle(random, 2 * i + 1);
+				int splitAngle2 = this.childSplitAngle(random, 2 * i + 2);
+
+				stackIndex[top] = 2 * i + 2;
+				stackX[top] = nx;
+				stackY[top] = ny;
+				stackTheta[top] = this.childAngle(branchTheta, -branchSplit);
+				stackSplit[top] = splitAngle2;
+				top++;
+
+				stackIndex[top] = 2 * i + 1;
+				stackX[top] = nx;
+				stackY[top] = ny;
+				stackTheta[top] = this.childAngle(branchTheta, branchSplit);
+				stackSplit[top] = splitAngle1;
+				top++;
+
+			}
+
+		}
+
+	}
+
+	/**
+	 *
+	 * Generates a single branch starting at sx and sy, along with its leaves and
+	 * fruit, and hands it to the sink as branch i. Returns where the branch ends,
+	 * with x and y packed into one long, see endX() and endY().
+	 * 
+	 * The two lengths are drawn from the branch's own geometry stream, and its
+	 * leaves and fruit from its decoration stream, so the numbers only depend on
+	 * the seed and the index of the branch.
+	 *
+	 * @param random
+	 * @param i
+	 * @param sx
+	 * @param sy
+	 * @param theta
+	 * @return
+	 */
+	private long growBranch(TreeRandom random, int i, int sx, int sy, double theta) {
+
+		int depth = TreeGenerator.depthOf(i);
+		int segsRemaining = maxSegments - depth;
+		int stroke = TreeGenerator.strokeAt(initialStroke, depth);
+
+		/*
+		 * Length is calculated via a helper method, and calculate the new x and new y
+		 * to draw a line to.
+		 */
+		random.seek(i, TreeRandom.GEOMETRY);
+		int length1 = this.branchLength(random, segsRemaining);
+		int length2 = this.branchLength(random, segsRemaining);
+		int nx = (int) (sx + length1 * this.cos(theta));
+		int ny = (int) (sy + length2 * this.sin(theta));
+		sink.branch(i, sx, sy, nx, ny, stroke, depth);
+
+		/*
+		 * Leaves are added if the segments remaining to generate is less than 5.
+		 */
+		if (segsRemaining < leavesAppear) {
+			int slot = i - firstLeafBranch;
+			random.seek(i, TreeRandom.DECORATION);
+			this.addLeaves(random, slot * this.leavesPerBranch(), nx, ny, theta);
+			this.addFruit(random, slot, nx, ny, theta);
+		}
+
+		return ((long) nx << 32) | (ny & 0xffffffffL);
+
+	}
+
+	/**
+	 *
+	 * Returns the x where a branch ends, from the value returned by growBranch().
+	 *
+	 * @param end
+	 * @return
+	 */
+	private static int endX(long end) {
+		return (int) (end >> 32);
+	}
+
+	/**
+	 *
+	 * Returns the y where a branch ends, from the value returned by growBranch().
+	 *
+	 * @param end
+	 * @return
+	 */
+	private static int endY(long end) {
+		return (int) end;
+	}
+
+	/**
+	 *
+	 * Returns whether two more branches grow from branch i, which is the case
+	 * unless it is on the last level.
+	 *
+	 * @param i
+	 * @return
+	 */
+	private boolean hasChildren(int i) {
+		return TreeGenerator.depthOf(i) < maxSegments - 1;
+	}
+
+	/**
+	 *
+	 * Returns the angle of a new branch, from the angle of the branch it grows from
+	 * and the split angle, which is negative for the second branch.
+	 *
+	 * @param theta
+	 * @param splitAngle
+	 * @return
+	 */
+	private int childAngle(double theta, double splitAngle) {
+		return (int) (theta + splitAngle + maxAngleNoise);
+	}
+
+	/**
+	 *
+	 * Returns a random split angle for new branch i, between 20 and the split
+	 * angle set by the user. It is drawn from the branch's own split stream.
+	 *
+	 * @param random
+	 * @param i
+	 * @return
+	 */
+	private int childSplitAngle(TreeRandom random, int i) {
+
+		int upper = (int) (this.splitAngle);
+		int lower = 20;
+		random.seek(i, TreeRandom.SPLIT);
+		return random.nextInt(lower, upper);
+
+	}
+
+	/**
+	 *
+	 * Returns the cosine of an angle in degrees. Whole degrees are looked up in the
+	 * TrigTable unless exact trigonometry has been asked for.
+	 *
+	 * @param theta
+	 * @return
+	 */
+	private double cos(double theta) {
+
+		int degrees = (int) theta;
+		if (!exactTrig && degrees == theta) {
+			return TrigTable.cos(degrees);
+		}
+		return Math.cos(Math.toRadians(theta));
+
+	}
+
+	/**
+	 *
+	 * Returns the sine of an angle in degrees. Whole degrees are looked up in the
+	 * TrigTable unless exact trigonometry has been asked for.
+	 *
+	 * @param theta
+	 * @return
+	 */
+	private double sin(double theta) {
+
+		int degrees = (int) theta;
+		if (!exactTrig && degrees == theta) {
+			return TrigTable.sin(degrees);
+		}
+		return Math.sin(Math.toRadians(theta));
+
+	}
+
+	/**
+	 *
+	 * Returns the depth of branch i, where the trunk is at depth 0.
+	 *
+	 * @param i
+	 * @return
+	 */
+	static int depthOf(int i) {
+		return 31 - Integer.numberOfLeadingZeros(i + 1);
+	}
+
+	/**
+	 *
+	 * Asks the generator to stop. This can be called from any thread, and
+	 * generate() will then throw a CancellationException as soon as it notices.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 *
+	 * This is a private helper method that throws a CancellationException if the
+	 * generator has been cancelled.
+	 */
+	private void checkCancelled() {
+
+		if (cancelled) {
+			throw new CancellationException("Tree generation was cancelled.");
+		}
+
+	}
+
+	/**
+	 *
+	 * Sets the depth above which branches are generated as separate fork-join
+	 * tasks. Zero generates the whole tree on the calling thread.
+	 *
+	 * @param parallelDepth
+	 */
+	public void setParallelDepth(int parallelDepth) {
+		this.parallelDepth = parallelDepth;
+	}
+
+	public int getParallelDepth() {
+		return parallelDepth;
+	}
+
+	/**
+	 *
+	 * Sets whether branch angles are calculated with Math.sin() and Math.cos()
+	 * instead of being looked up in the TrigTable. This is slower and mostly
+	 * useful for comparing the two.
+	 *
+	 * @param exactTrig
+	 */
+	public void setExactTrig(boolean exactTrig) {
+		this.exactTrig = exactTrig;
+	}
+
+	public boolean isExactTrig() {
+		return exactTrig;
+	}
+
+	/**
+	 *
+	 * Makes the tree use the given leaf colors instead of picking its own, so that
+	 * many trees can share one palette, such as the trees of a Forest. The
+	 * palette must have LEAF_PALETTE_SIZE colors.
+	 *
+	 * @param palette
+	 */
+	void setLeafPalette(Color[] palette) {
+		this.sharedLeafPalette = palette;
+	}
+
+	/**
+	 *
+	 * Sets the fork-join pool that parallel generation runs in. By default the
+	 * common pool is used.
+	 *
+	 * @param pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 *
+	 * Returns the stroke of a branch at the given depth. The stroke starts at the
+	 * initial stroke for the trunk and is decreased by one per level, unless it is
+	 * already one.
+	 *
+	 * @param initialStroke
+	 * @param depth
+	 * @return
+	 */
+	static int strokeAt(int initialStroke, int depth) {
+
+		if (initialStroke <= 1) {
+			return initialStroke;
+		}
+		return Math.max(initialStroke - depth, 1);
+
+	}
+
+	/**
+	 *
+	 * Returns how many leaves are placed on each branch end that has leaves.
+	 *
+	 * @return
+	 */
+	private int leavesPerBranch() {
+
+		if (leafParts >= 1 && leafParts <= 3) {
+			return leafParts;
+		}
+		return 0;
+
+	}
+
+	/**
+	 *
+	 * Returns the leaf colors for the tree. They are drawn from a stream of their
+	 * own, so they only depend on the seed, unless a palette was given to
+	 * setLeafPalette().
+	 *
+	 * @return
+	 */
+	Color[] leafPalette() {
+
+		if (sharedLeafPalette != null) {
+			return sharedLeafPalette;
+		}
+		TreeRandom random = new TreeRandom(seed);
+		random.seek(-1, TreeRandom.DECORATION);
+		Color[] palette = new Color[LEAF_PALETTE_SIZE];
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = Tree.leafColor(random);
+		}
+		return palette;
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that picks a random color from the leaf
+	 * palette and returns its number.
+	 *
+	 * @param random
+	 * @return
+	 */
+	private int leafColorIndex(TreeRandom random) {
+		return random.nextInt(0, LEAF_PALETTE_SIZE);
+	}
+
+	/**
+	 *
+	 * This is a private helper method to add leaves at the end of a branch,
+	 * starting at the given leaf slot. Each leaf keeps the rotation
+	 * it is drawn with, which adds up by theta for every extra leaf part.
+	 *
+	 * @param random
+	 * @param slot
+	 * @param x
+	 * @param y
+	 * @param theta
+	 */
+	private void addLeaves(TreeRandom random, int slot, int x, int y, double theta) {
+
+		/*
+		 * Depending on how many leaves to be drawn (1, 2, or 3) are set from the GUI,
+		 * the corresponding amount are added.
+		 */
+		switch (leafParts) {
+		case 1:
+			sink.leaf(slot, x, y, (float) theta, this.leafColorIndex(random)); // a single leaf is rotated by theta
+			break;
+		case 2:
+			sink.leaf(slot, x, y, 0f, this.leafColorIndex(random));
+			sink.leaf(slot + 1, x, y, (float) theta, this.leafColorIndex(random));
+			break;
+		case 3:
+			sink.leaf(slot, x, y, 0f, this.leafColorIndex(random));
+			sink.leaf(slot + 1, x, y, (float) theta, this.leafColorIndex(random));
+			sink.leaf(slot + 2, x, y, (float) (2 * theta), this.leafColorIndex(random));
+			break;
+		default:
+			System.out.println("Not a valid leafPart value.");
+			break;
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that places a fruit at the end of a branch
+	 * if the user has selected to show fruit. Only some branch ends get a fruit.
+	 *
+	 * @param random
+	 * @param slot
+	 * @param x
+	 * @param y
+	 * @param theta
+	 */
+	private void addFruit(TreeRandom random, int slot, int x, int y, double theta) {
+
+		if (!showFruit) {
+			return;
+		}
+
+		/*
+		 * A random integer is calculated between 1 and 20. If the integer is greater
+		 * than 15, a fruit is added at the current x, y. This randomizes and spreads
+		 * out the drawing of fruit.
+		 */
+		int upper = 20;
+		int lower = 0;
+		int drawFruit = random.nextInt(lower, upper);
+
+		if (drawFruit > 15) {
+			sink.fruit(slot, x, y, (float) theta, 0); // there is only one fruit color
+		}
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method to calculate the length of a branch. It
+	 * takes into account noise set from the user.
+	 *
+	 * @param random
+	 * @param segsRemaining
+	 * @return
+	 */
+	private int branchLength(TreeRandom random, int segsRemaining) {
+
+		int upper = upperBranchLength;
+		int lower = 0;
+		int noise = random.nextInt(lower, upper);
+
+		int length = 10 * segsRemaining + noise;
+		return length;
+
+	}
+
+	/**
+	 *
+	 * A fork-join task that generates one branch, and then either forks a task for
+	 * each of the two branches growing from it, or generates the rest of the
+	 * subtree sequentially once the parallel depth is reached.
+	 *
+	 */
+	private class BranchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+		private final int sx;
+		private final int sy;
+		private final double theta;
+		private final double splitAngle;
+
+		BranchTask(int index, int sx, int sy, double theta, double splitAngle) {
+			this.index = index;
+			this.sx = sx;
+			this.sy = sy;
+			this.theta = theta;
+			this.splitAngle = splitAngle;
+		}
+
+		@Override
+		protected void compute() {
+
+			TreeGenerator.this.checkCancelled();
+
+			if (TreeGenerator.depthOf(index) >= parallelDepth) {
+				TreeGenerator.this.generateSubtree(index, sx, sy, theta, splitAngle);
+				return;
+			}
+
+			TreeRandom random = new TreeRandom(seed);
+			long end = TreeGenerator.this.growBranch(random, index, sx, sy, theta);
+			if (TreeGenerator.this.hasChildren(index)) {
+
+				int nx = TreeGenerator.endX(end);
+				int ny = TreeGenerator.endY(end);
+				BranchTask first = new BranchTask(2 * index + 1, nx, ny,
+						TreeGenerator.this.childAngle(theta, splitAngle),
+						TreeGenerator.this.childSplitAngle(random, 2 * index + 1));
+				BranchTask second = new BranchTask(2 * index + 2, nx, ny,
+						TreeGenerator.this.childAngle(theta, -splitAngle),
+						TreeGenerator.this.childSplitAngle(random, 2 * index + 2));
+				ForkJoinTask.invokeAll(first, second);
+
+			}
+
+		}
+
+	}
+
+}
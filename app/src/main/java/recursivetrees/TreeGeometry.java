@@ -0,0 +1,212 @@
+package recursivetrees;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+/**
+ * This class holds the generated shape of a Tree: every branch segment, leaf
+ * and fruit. It is built once per configuration by the Tree, and painting it
+ * only replays the stored values, so no random numbers or trigonometry are
+ * needed when the canvas is repainted.
+ * 
+ * The branches, leaves and fruit are kept in primitive buffers rather than as
+ * one object each, see SegmentBuffer and LeafBuffer. Leaves and fruit refer to
+ * their colors by number in a small palette that is made once per tree, and
+ * strokes come from the StrokeTable. Painting only makes the few paths that
+ * the branches and ovals are collected into.
+ *
+ * A TreeGeometry never changes what it shows once it is built, but its arrays
+ * can change past its end. A tree grown from it by a GeometryBuilder shares
+ * its arrays and stores the new branches and leaves after the last ones of
+ * this tree, where this tree never looks. Two trees grown from the same tree
+ * store into the same places. They store the same values there, since every
+ * branch and its leaves only depend on the seed and the index of the branch,
+ * so each of them still sees its own tree.
+ *
+ * When only part of the tree is visible, for example when the canvas is zoomed
+ * in, a SpatialIndex can be passed to paint() so that only the parts inside the
+ * clip are drawn.
+ *
+ * @author frankdesilets
+ *
+ */
+public class TreeGeometry {
+
+	private final SegmentBuffer branches;
+	private final LeafBuffer leaves;
+	private final LeafBuffer fruit;
+	private final Color branchColor;
+	private final Color[] leafPalette; // the colors the leaves pick from
+	private final Color[] fruitPalette; // the colors the fruit picks from
+	private final int firstLeafBranch; // the first branch that carries leaves
+	private final int leavesPerBranch;
+
+	TreeGeometry(SegmentBuffer branches, LeafBuffer leaves, LeafBuffer fruit, int firstLeafBranch,
+			int leavesPerBranch, Color branchColor, Color[] leafPalette, Color[] fruitPalette) {
+
+		this.branches = branches;
+		this.leaves = leaves;
+		this.fruit = fruit;
+		this.firstLeafBranch = firstLeafBranch;
+		this.leavesPerBranch = leavesPerBranch;
+		this.branchColor = branchColor;
+		this.leafPalette = leafPalette;
+		this.fruitPalette = fruitPalette;
+
+	}
+
+	/**
+	 *
+	 * This method paints the stored tree. Branches are drawn first, then the leaves
+	 * and the fruit on top of them. They are collected into a few paths by a
+	 * ShapeBatch, so the stroke and color only change once per path.
+	 *
+	 * @param g
+	 */
+	public void paint(Graphics g) {
+
+		this.paint(g, null);
+
+	}
+
+	/**
+	 *
+	 * This method paints the parts of the stored tree that are inside the clip of
+	 * g, using the index to find them. The clip is taken in the coordinates of the
+	 * tree, after any zoom that has been applied to g. Without an index or a clip
+	 * the whole tree is painted.
+	 *
+	 * @param g
+	 * @param index
+	 */
+	public void paint(Graphics g, SpatialIndex index) {
+
+		Graphics2D g2 = (Graphics2D) g;
+		Rectangle clip = g2.getClipBounds();
+		SpatialIndex.Selection visible = null;
+		if (index != null && clip != null) {
+			visible = index.select(clip);
+		}
+		ShapeBatch batch = new ShapeBatch();
+
+		/*
+		 * The branches are drawn with the stroke they were generated with, one path
+		 * for every stroke.
+		 */
+		batch.start(g2, branchColor, leafPalette);
+		for (int i = this.nextBranch(visible, 0); i >= 0; i = this.nextBranch(visible, i + 1)) {
+			batch.line(branches.stroke(i), branches.x1(i), branches.y1(i), branches.x2(i), branches.y2(i));
+		}
+		batch.finish();
+
+		/*
+		 * Each leaf is placed and rotated into the path of its color.
+		 */
+		batch.start(g2, branchColor, leafPalette);
+		for (int i = this.nextLeaf(visible, 0); i >= 0; i = this.nextLeaf(visible, i + 1)) {
+			batch.oval(leaves.color(i), leaves.x(i), leaves.y(i), leaves.rotation(i), 5, 10);
+		}
+		batch.finish();
+
+		/*
+		 * Fruit is drawn the same way as leaves, but smaller.
+		 */
+		batch.start(g2, branchColor, fruitPalette);
+		for (int i = this.nextFruit(visible, 0); i >= 0; i = this.nextFruit(visible, i + 1)) {
+			batch.oval(fruit.color(i), fruit.x(i), fruit.y(i), fruit.rotation(i), 5, 5);
+		}
+		batch.finish();
+
+	}
+
+	/**
+	 *
+	 * This is a private helper method that returns the next branch to paint at or
+	 * after index i, or -1 when there are no more. Without a selection every
+	 * branch is painted. nextLeaf() and nextFruit() do the same for the ovals.
+	 *
+	 * @param visible
+	 * @param i
+	 * @return
+	 */
+	private int nextBranch(SpatialIndex.Selection visible, int i) {
+
+		if (visible != null) {
+			return visible.nextBranch(i);
+		}
+		return i < branches.size() ? i : -1;
+
+	}
+
+	private int nextLeaf(SpatialIndex.Selection visible, int i) {
+
+		if (visible != null) {
+			return visible.nextLeaf(i);
+		}
+		return i < leaves.size() ? i : -1;
+
+	}
+
+	private int nextFruit(SpatialIndex.Selection visible, int i) {
+
+		if (visible != null) {
+			return visible.nextFruit(i);
+		}
+		return i < fruit.size() ? i : -1;
+
+	}
+
+	public SegmentBuffer getBranches() {
+		return branches;
+	}
+
+	public LeafBuffer getLeaves() {
+		return leaves;
+	}
+
+	public LeafBuffer getFruit() {
+		return fruit;
+	}
+
+	/**
+	 *
+	 * Returns the index of the first branch that carries leaves. From there on,
+	 * branch i carries the leaves starting at (i - getFirstLeafBranch()) *
+	 * getLeavesPerBranch().
+	 *
+	 * @return
+	 */
+	public int getFirstLeafBranch() {
+		return firstLeafBranch;
+	}
+
+	public int getLeavesPerBranch() {
+		return leavesPerBranch;
+	}
+
+	/**
+	 *
+	 * Returns how many levels of branches the tree has. A tree that is still
+	 * growing (see TreeGenerator.grow()) has fewer levels than its settings.
+	 *
+	 * @return
+	 */
+	public int getLevels() {
+		return TreeGenerator.depthOf(branches.size());
+	}
+
+	public Color getBranchColor() {
+		return branchColor;
+	}
+
+	public Color[] getLeafPalette() {
+		return leafPalette;
+	}
+
+	public Color[] getFruitPalette() {
+		return fruitPalette;
+	}
+
+}
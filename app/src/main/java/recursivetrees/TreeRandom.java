@@ -0,0 +1,100 @@
+package recursivetrees;
+
+/**
+ * This class is a small random number generator used to generate trees from a
+ * seed. Unlike Math.random(), it has no shared state, and it can jump straight
+ * to the numbers of any branch of the tree with seek(). Every branch therefore
+ * gets the same random numbers no matter which thread generates it or in what
+ * order, and the same seed always gives the same tree.
+ * 
+ * The numbers come from the SplitMix64 algorithm, the same one used by
+ * java.util.SplittableRandom.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class TreeRandom {
+
+	/*
+	 * Each branch has separate streams of numbers: one for its length, one for
+	 * the split angle it is given, and one for its leaves and fruit. Changing the
+	 * leaf settings then never changes the shape of the tree.
+	 */
+	public static final int GEOMETRY = 0;
+	public static final int SPLIT = 1;
+	public static final int DECORATION = 2;
+	private static final int STREAMS = 3;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final long seed;
+	private long state;
+
+	public TreeRandom(long seed) {
+
+		this.seed = seed;
+		this.state = seed;
+
+	}
+
+	/**
+	 * 
+	 * Moves to the start of the numbers for the given branch and stream.
+	 * 
+	 * @param branch
+	 * @param stream
+	 */
+	public void seek(int branch, int stream) {
+
+		this.state = TreeRandom.mix64(seed + GOLDEN_GAMMA * ((long) STREAMS * branch + stream + 1));
+
+	}
+
+	/**
+	 * 
+	 * Returns the next random number between 0 (inclusive) and 1 (exclusive).
+	 * 
+	 * @return
+	 */
+	public double nextDouble() {
+
+		this.state += GOLDEN_GAMMA;
+		return (TreeRandom.mix64(state) >>> 11) * 0x1.0p-53;
+
+	}
+
+	/**
+	 * 
+	 * Returns a random integer between lower (inclusive) and upper (exclusive),
+	 * calculated the same way the rest of the project does it.
+	 * 
+	 * @param lower
+	 * @param upper
+	 * @return
+	 */
+	public int nextInt(int lower, int upper) {
+
+		return (int) ((this.nextDouble() * (upper - lower)) + lower);
+
+	}
+
+	/**
+	 * 
+	 * This is a private helper method that scrambles the bits of a number.
+	 * 
+	 * @param z
+	 * @return
+	 */
+	private static long mix64(long z) {
+
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+}
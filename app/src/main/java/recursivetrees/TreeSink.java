@@ -0,0 +1,72 @@
+package recursivetrees;
+
+import java.awt.Color;
+
+/**
+ * A TreeSink receives the parts of a tree as the TreeGenerator makes them. The
+ * GeometryBuilder stores them in buffers to make a TreeGeometry, while other
+ * sinks, like the SvgExporter, write them out straight away so the tree never
+ * has to be kept in memory.
+ * 
+ * Every branch has an index, with the trunk at 0 and the two branches growing
+ * from branch i at 2i + 1 and 2i + 2. Leaves and fruit have a slot, numbered
+ * from the first branch end that can carry leaves. A sink that is used for
+ * parallel generation gets calls from several threads at once, but never two
+ * for the same index or slot.
+ * 
+ * @author frankdesilets
+ *
+ */
+public interface TreeSink {
+
+	/**
+	 * 
+	 * Called once before any branch, with the colors the tree is drawn with.
+	 * Leaves and fruit refer to their color by its number in a palette.
+	 * 
+	 * @param branchColor
+	 * @param leafPalette
+	 * @param fruitPalette
+	 */
+	void start(Color branchColor, Color[] leafPalette, Color[] fruitPalette);
+
+	/**
+	 * 
+	 * Called for every branch.
+	 * 
+	 * @param i
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param stroke
+	 * @param depth
+	 */
+	void branch(int i, int x1, int y1, int x2, int y2, int stroke, int depth);
+
+	/**
+	 * 
+	 * Called for every leaf, right after the branch it grows on.
+	 * 
+	 * @param slot
+	 * @param x
+	 * @param y
+	 * @param rotation
+	 * @param color
+	 */
+	void leaf(int slot, int x, int y, float rotation, int color);
+
+	/**
+	 * 
+	 * Called for every fruit, right after the leaves of the branch it grows on.
+	 * Only some branch ends get a fruit.
+	 * 
+	 * @param slot
+	 * @param x
+	 * @param y
+	 * @param rotation
+	 * @param color
+	 */
+	void fruit(int slot, int x, int y, float rotation, int color);
+
+}
@@ -0,0 +1,65 @@
+package recursivetrees;
+
+/**
+ * This class holds the sine and cosine of every whole degree from -1440 to
+ * 1440. Branch angles in a tree are always whole degrees, so the generator can
+ * look them up here instead of calling Math.sin() and Math.cos() for every
+ * branch.
+ * 
+ * The values are calculated with Math.toRadians() and Math.sin() or Math.cos()
+ * for each angle itself rather than for the angle wrapped to 0 to 359, since
+ * those can differ in the last digit, and a branch ending at -0.0000001 instead
+ * of +0.0000001 would move a whole pixel when it is cut to an int. A tree
+ * generated with the table is therefore exactly the same as one generated with
+ * Math. Angles outside of the table are calculated with Math.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class TrigTable {
+
+	public static final int LIMIT = 1440; // four full turns either way
+
+	private static final double[] SIN = new double[2 * LIMIT + 1];
+	private static final double[] COS = new double[2 * LIMIT + 1];
+
+	static {
+		for (int degrees = -LIMIT; degrees <= LIMIT; degrees++) {
+			SIN[degrees + LIMIT] = Math.sin(Math.toRadians(degrees));
+			COS[degrees + LIMIT] = Math.cos(Math.toRadians(degrees));
+		}
+	}
+
+	/**
+	 * 
+	 * Returns the sine of an angle in whole degrees.
+	 * 
+	 * @param degrees
+	 * @return
+	 */
+	public static double sin(int degrees) {
+
+		if (degrees >= -LIMIT && degrees <= LIMIT) {
+			return SIN[degrees + LIMIT];
+		}
+		return Math.sin(Math.toRadians(degrees));
+
+	}
+
+	/**
+	 * 
+	 * Returns the cosine of an angle in whole degrees.
+	 * 
+	 * @param degrees
+	 * @return
+	 */
+	public static double cos(int degrees) {
+
+		if (degrees >= -LIMIT && degrees <= LIMIT) {
+			return COS[degrees + LIMIT];
+		}
+		return Math.cos(Math.toRadians(degrees));
+
+	}
+
+}
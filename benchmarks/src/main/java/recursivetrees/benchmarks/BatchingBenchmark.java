@@ -0,0 +1,122 @@
+package recursivetrees.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recursivetrees.LevelOfDetail;
+import recursivetrees.TreeGeometry;
+
+/**
+ * This benchmark compares painting a whole tree through a LevelOfDetail with
+ * the branches, leaves and fruit collected into paths (see ShapeBatch) and
+ * with every shape drawn on its own. With the view "fit" the tree is zoomed
+ * out to fit the image, like the canvas does when zoomed out, so a deep tree is
+ * mostly dots. With the view "actual" it is painted at its own size, like the
+ * canvas paints its layers, so every branch is drawn with the stroke of its
+ * level and the branch paths of every stroke width are measured.
+ *
+ * Besides the time, it reports how many times the color, stroke or transform
+ * of the Graphics2D changed while painting, each of which makes Java2D
+ * validate its pipeline again, and how many draw calls were made. Every paint
+ * adds its counts, along with one to paints, and JMH adds the counters up over
+ * the measurement iterations, so the counts of one paint are stateChanges /
+ * paints and drawCalls / paints however many iterations are run.
+ *
+ * @author frankdesilets
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Djava.awt.headless=true" })
+public class BatchingBenchmark {
+
+	@Param({ "12", "16", "20" })
+	private int maxSegments;
+
+	@Param({ "false", "true" })
+	private boolean batched;
+
+	@Param({ "fit", "actual" })
+	private String view;
+
+	private LevelOfDetail detail;
+	private BufferedImage image;
+	private Graphics2D g2;
+
+	/**
+	 * The counts of all paints of an iteration, reported next to the time.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counts {
+
+		public long paints;
+		public long stateChanges;
+		public long drawCalls;
+
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		TreeGeometry geometry = BenchmarkTrees.tree(maxSegments, 3, true).generate(BenchmarkTrees.PLANT_X,
+				BenchmarkTrees.PLANT_Y);
+		this.detail = new LevelOfDetail(geometry);
+		detail.setBatched(batched);
+		this.image = new BufferedImage(BenchmarkTrees.WIDTH, BenchmarkTrees.HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		this.g2 = image.createGraphics();
+
+		/*
+		 * The clip is the image. For "fit" the whole tree is scaled into it.
+		 */
+		g2.setClip(0, 0, BenchmarkTrees.WIDTH, BenchmarkTrees.HEIGHT);
+		if (view.equals("fit")) {
+			Rectangle2D.Float bounds = detail.getSubtreeBounds(0);
+			double scale = Math.min(BenchmarkTrees.WIDTH / bounds.width, BenchmarkTrees.HEIGHT / bounds.height);
+			g2.scale(scale, scale);
+			g2.translate(-bounds.x, -bounds.y);
+		} else if (!view.equals("actual")) {
+			throw new IllegalArgumentException("view must be fit or actual, not " + view);
+		}
+
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		g2.dispose();
+
+	}
+
+	@Benchmark
+	public BufferedImage paint(Counts counts) {
+
+		detail.paint(g2);
+		counts.paints++;
+		counts.stateChanges += detail.getStateChanges();
+		counts.drawCalls += detail.getDrawCalls();
+		return image;
+
+	}
+
+}
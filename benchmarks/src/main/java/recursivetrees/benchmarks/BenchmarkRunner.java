@@ -0,0 +1,41 @@
+package recursivetrees.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This class runs the benchmarks with the GC profiler switched on, so the
+ * allocation rate is reported next to throughput and the SampleTime
+ * percentiles. The results are also written to jmh-result.json, which can be
+ * compared between builds to catch performance regressions.
+ * 
+ * Any normal JMH command line options can be given, for example a regular
+ * expression to run only some of the benchmarks:
+ * 
+ * java -jar benchmarks/target/benchmarks.jar Generation -p maxSegments=20
+ * 
+ * @author frankdesilets
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result.json")
+				.build();
+
+		new Runner(options).run();
+
+	}
+
+}
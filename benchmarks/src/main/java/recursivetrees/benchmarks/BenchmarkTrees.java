@@ -0,0 +1,43 @@
+package recursivetrees.benchmarks;
+
+import recursivetrees.Tree;
+
+/**
+ * This class sets up the trees used by the benchmarks, so every benchmark
+ * measures the same trees.
+ * 
+ * @author frankdesilets
+ *
+ */
+public class BenchmarkTrees {
+
+	public static final long SEED = 20220501L;
+	public static final int WIDTH = 600;
+	public static final int HEIGHT = 600;
+	public static final int PLANT_X = 330;
+	public static final int PLANT_Y = 490;
+
+	/**
+	 * 
+	 * Returns a Tree with a fixed seed and noise, and the given amount of segments,
+	 * leaf parts and fruit setting.
+	 * 
+	 * @param maxSegments
+	 * @param leafParts
+	 * @param showFruit
+	 * @return
+	 */
+	public static Tree tree(int maxSegments, int leafParts, boolean showFruit) {
+
+		Tree tree = new Tree();
+		tree.setSeed(SEED);
+		tree.setMaxSegments(maxSegments);
+		tree.setLeafParts(leafParts);
+		tree.setShowFruit(showFruit);
+		tree.setSplitAngle(30);
+		tree.setUpperBranchLengthForCalculation(20);
+		return tree;
+
+	}
+
+}
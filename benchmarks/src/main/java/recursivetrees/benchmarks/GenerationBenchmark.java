@@ -0,0 +1,75 @@
+package recursivetrees.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recursivetrees.Tree;
+import recursivetrees.TreeGenerator;
+import recursivetrees.TreeGeometry;
+
+/**
+ * This benchmark measures how long it takes to generate a tree, for trees of
+ * different depths, with one to three leaves per branch end and with or without
+ * fruit. Generation is measured both on one thread and split into fork-join
+ * tasks.
+ * 
+ * The seed is fixed so every run generates the same trees.
+ * 
+ * @author frankdesilets
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Djava.awt.headless=true" })
+public class GenerationBenchmark {
+
+	@Param({ "8", "12", "16", "20", "24" })
+	private int maxSegments;
+
+	@Param({ "1", "2", "3" })
+	private int leafParts;
+
+	@Param({ "false", "true" })
+	private boolean showFruit;
+
+	@Param({ "sequential", "parallel" })
+	private String mode;
+
+	private Tree tree;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		this.tree = BenchmarkTrees.tree(maxSegments, leafParts, showFruit);
+
+	}
+
+	@Benchmark
+	public TreeGeometry generate() {
+
+		TreeGenerator generator = new TreeGenerator(tree);
+		if (mode.equals("sequential")) {
+			generator.setParallelDepth(0);
+		} else {
+			generator.setParallelDepth(Math.min(TreeGenerator.DEFAULT_PARALLEL_DEPTH, maxSegments - 1));
+		}
+		return generator.generate(BenchmarkTrees.PLANT_X, BenchmarkTrees.PLANT_Y);
+
+	}
+
+}
@@ -0,0 +1,77 @@
+package recursivetrees.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recursivetrees.TreeGeometry;
+
+/**
+ * This benchmark measures how long it takes to draw an already generated tree
+ * into a BufferedImage the size of the canvas, without a screen. The tree is
+ * generated once per trial, so only drawing is measured.
+ * 
+ * @author frankdesilets
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Djava.awt.headless=true" })
+public class RenderBenchmark {
+
+	@Param({ "8", "12", "16", "20" })
+	private int maxSegments;
+
+	@Param({ "1", "3" })
+	private int leafParts;
+
+	@Param({ "false", "true" })
+	private boolean showFruit;
+
+	private TreeGeometry geometry;
+	private BufferedImage image;
+	private Graphics2D g2;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		this.geometry = BenchmarkTrees.tree(maxSegments, leafParts, showFruit).generate(BenchmarkTrees.PLANT_X,
+				BenchmarkTrees.PLANT_Y);
+		this.image = new BufferedImage(BenchmarkTrees.WIDTH, BenchmarkTrees.HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		this.g2 = image.createGraphics();
+
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		g2.dispose();
+
+	}
+
+	@Benchmark
+	public BufferedImage paint() {
+
+		geometry.paint(g2);
+		return image;
+
+	}
+
+}